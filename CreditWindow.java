@@ -0,0 +1,114 @@
+package ithaki;
+
+/**
+ * Keeps count of the NEXT tokens sent ahead in a FLOW=ON transfer and decides how many may be outstanding.
+ * Each NEXT lets the server send one fragment, so sending several of them ahead keeps the path busy instead of
+ * waiting one round trip per fragment. The window is sized to the bandwidth-delay product of the path: the
+ * smallest round trip seen (from a NEXT to the fragment it releases) divided by the time between fragments,
+ * plus one. The smallest round trip is used because the round trip of a full window also includes the time the
+ * token waits behind the earlier ones. The window never grows past the number of fragments that fit in the
+ * receive buffer.
+ */
+public class CreditWindow {
+
+	private final int max;
+	private final long[] sent;        // send times of the outstanding tokens, oldest at head
+	private int head;
+	private int outstanding;
+	private int window = 1;
+	private long minRtt = Long.MAX_VALUE;
+	private double gap;               // smoothed time between fragments in ns
+	private long lastArrival;
+
+	/**
+	 * @param max the most tokens that may be outstanding, normally the receive buffer size divided by L
+	 */
+	public CreditWindow(int max) {
+		this.max = Math.max(1, max);
+		this.sent = new long[this.max];
+	}
+
+	/**
+	 * @return the number of tokens that should be sent now to fill the window
+	 */
+	public int toSend() {
+		return Math.max(0, window - outstanding);
+	}
+
+	/**
+	 * Records a token that was just sent.
+	 *
+	 * @param now the send time in nanoseconds
+	 */
+	public void sent(long now) {
+		if (outstanding == max) {  // a token was lost, forget the oldest one
+			head = (head + 1) % max;
+			outstanding--;
+		}
+		sent[(head + outstanding) % max] = now;
+		outstanding++;
+	}
+
+	/**
+	 * Records a fragment, which used up the oldest outstanding token, and resizes the window.
+	 *
+	 * @param now the arrival time in nanoseconds
+	 */
+	public void received(long now) {
+		if (outstanding > 0) {
+			minRtt = Math.min(minRtt, now - sent[head]);
+			head = (head + 1) % max;
+			outstanding--;
+		}
+		if (lastArrival != 0) {
+			long sample = now - lastArrival;
+			gap = gap == 0 ? sample : 0.875 * gap + 0.125 * sample;
+		}
+		lastArrival = now;
+		if (minRtt != Long.MAX_VALUE && gap > 0) {
+			window = (int) Math.min(max, Math.ceil(minRtt / gap) + 1);
+		} else {
+			window = Math.min(max, 2);  // no estimate yet, allow one token ahead
+		}
+	}
+
+	/**
+	 * Forgets the outstanding tokens sent before the given time. The fragments are answered in the order of the
+	 * tokens, so if the fragment of a token older than a round trip timeout has not arrived, the token or its
+	 * fragment was lost, and it only keeps a place of the window taken.
+	 *
+	 * @param before the send time in nanoseconds before which a token is overdue
+	 * @return the tokens forgotten
+	 */
+	public int expire(long before) {
+		int expired = 0;
+		while (outstanding > 0 && sent[head] < before) {
+			head = (head + 1) % max;
+			outstanding--;
+			expired++;
+		}
+		return expired;
+	}
+
+	/**
+	 * Forgets all the outstanding tokens, for example after a timeout when they are not going to be answered.
+	 */
+	public void reset() {
+		head = 0;
+		outstanding = 0;
+	}
+
+	/**
+	 * @return the current window size in tokens
+	 */
+	public int window() {
+		return window;
+	}
+
+	/**
+	 * @return the tokens sent and not answered yet
+	 */
+	public int outstanding() {
+		return outstanding;
+	}
+}
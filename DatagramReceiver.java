@@ -0,0 +1,118 @@
+package ithaki;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * Receives datagrams on a local port through a non-blocking <code>DatagramChannel</code> into a buffer given by
+ * the caller. Waiting is done with a selector, so a receive can have a timeout, and nothing is allocated per
+ * datagram: the caller reuses the same (direct) buffer for every packet.
+ */
+public class DatagramReceiver implements Closeable {
+
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private long timeouts;
+
+	/**
+	 * Binds a channel to the given local port.
+	 *
+	 * @param port the local port to receive packets on
+	 * @throws IOException if the port cannot be bound
+	 */
+	public DatagramReceiver(int port) throws IOException {
+		channel = DatagramChannel.open();
+		channel.bind(new InetSocketAddress(port));
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Receives one datagram into <code>dst</code>. The buffer is cleared first, and on return it is flipped so
+	 * that it holds exactly the received bytes. A datagram longer than the buffer is truncated.
+	 *
+	 * @param dst     the buffer to receive into
+	 * @param timeout the longest time to wait in milliseconds, 0 to wait for ever
+	 * @return the length of the datagram, or -1 if the timeout expired
+	 * @throws IOException if an I/O error occurs
+	 */
+	public int receive(ByteBuffer dst, long timeout) throws IOException {
+		if (timeout == 0) {
+			return receive(dst, false, 0);
+		}
+		return receive(dst, true, System.nanoTime() + timeout * 1000000);
+	}
+
+	/**
+	 * Receives one datagram into <code>dst</code>, waiting no later than an absolute deadline. The buffer is
+	 * handled as in receive(ByteBuffer, long).
+	 *
+	 * @param dst      the buffer to receive into
+	 * @param deadline the time to give up, as a System.nanoTime() value
+	 * @return the length of the datagram, or -1 if the deadline passed
+	 * @throws IOException if an I/O error occurs
+	 */
+	public int receiveUntil(ByteBuffer dst, long deadline) throws IOException {
+		return receive(dst, true, deadline);
+	}
+
+	/**
+	 * Receives a datagram that is already waiting, without waiting and without counting a timeout. Used to throw
+	 * away late duplicates, for example the answer to the first copy of a request that was sent again.
+	 *
+	 * @param dst the buffer to receive into
+	 * @return the length of the datagram, or -1 if none was waiting
+	 * @throws IOException if an I/O error occurs
+	 */
+	public int poll(ByteBuffer dst) throws IOException {
+		dst.clear();
+		boolean received = channel.receive(dst) != null;
+		dst.flip();
+		return received ? dst.remaining() : -1;
+	}
+
+	/**
+	 * @return the number of receives that ended without a datagram since the receiver was opened
+	 */
+	public long timeouts() {
+		return timeouts;
+	}
+
+	private int receive(ByteBuffer dst, boolean bounded, long deadline) throws IOException {
+		dst.clear();
+		while (channel.receive(dst) == null) {  // nothing waiting, sleep on the selector
+			long wait = 0;
+			if (bounded) {
+				wait = (deadline - System.nanoTime() + 999999) / 1000000;  // round up, select(0) would wait for ever
+				if (wait <= 0) {
+					timeouts++;
+					dst.flip();
+					return -1;
+				}
+			}
+			selector.select(wait);
+			selector.selectedKeys().clear();
+		}
+		dst.flip();
+		return dst.remaining();
+	}
+
+	/**
+	 * @return the channel, to set socket options
+	 */
+	public DatagramChannel channel() {
+		return channel;
+	}
+
+	@Override
+	public void close() throws IOException {
+		selector.close();
+		channel.close();
+	}
+}
@@ -0,0 +1,50 @@
+package ithaki;
+
+/**
+ * Decodes the DPCM packets of the Ithaki server one at a time, as they arrive. Every byte of a packet holds two
+ * differences of 4 bits, the low nibble first, each stored with an offset of 8. Every sample is the previous
+ * sample plus its difference, kept in a byte like the 8 bit signed PCM played by the line; the first sample of
+ * the track is 0, and the first sample of every other packet continues from the last sample of the one before.
+ * The nibbles are looked up in the tables of NibbleDecoder. The decoder keeps only that last sample, so its
+ * memory does not depend on the length of the track.
+ */
+public class DpcmDecoder {
+
+	/** The number of samples in a packet of 128 bytes. */
+	public static final int SAMPLES_PER_PACKET = 256;
+
+	private byte last;
+	private boolean first = true;
+
+	/**
+	 * Splits a packet into its differences.
+	 *
+	 * @param packet the packet
+	 * @param offset where the 128 bytes of the packet start
+	 * @param dif    receives the 256 differences
+	 */
+	public void differences(byte[] packet, int offset, int[] dif) {
+		NibbleDecoder.dpcm(packet, offset, 128, dif);
+	}
+
+	/**
+	 * Adds up the differences of one packet to samples, continuing from the last sample of the previous packet.
+	 * The sums wrap around like the bytes they are stored in.
+	 *
+	 * @param dif     the 256 differences of the packet
+	 * @param samples receives the 256 samples
+	 */
+	public void reconstruct(int[] dif, byte[] samples) {
+		NibbleDecoder.dpcmSamples(dif, SAMPLES_PER_PACKET, last, first, samples);
+		last = samples[SAMPLES_PER_PACKET - 1];
+		first = false;
+	}
+
+	/**
+	 * Starts a new track.
+	 */
+	public void reset() {
+		last = 0;
+		first = true;
+	}
+}
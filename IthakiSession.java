@@ -0,0 +1,199 @@
+package ithaki;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * A connection to the Ithaki server that lasts for many requests. The server address is resolved once, requests
+ * are sent from one connected channel and replies are received on one channel bound to the client port, with a
+ * large receive buffer so bursts of image or sound packets are not dropped. The echo packets that wake up the
+ * server are sent only the first time initiate() is called on the session.
+ * The session keeps an RFC 6298 estimate of the round trip time, fed by the echo packets, and receives can wait
+ * until a deadline of one retransmission timeout from now instead of a fixed time; the receives that end without
+ * a packet are counted. Requests that can be repeated are sent again on a timeout through a RetransmitTimer on
+ * the same estimate, which gets no samples from the retransmitted requests.
+ * Because the client port stays bound between methods, the packets that arrive after a method stopped waiting
+ * (late echo replies, the tail of a sound stream, the fragments of an image that timed out) would be taken by the
+ * next method as its own; every method calls drain() before its first request to throw them away.
+ * All the UDP methods of UserProgram take a session, so a full run of main() sets everything up only once.
+ */
+public class IthakiSession implements Closeable {
+
+	private final InetSocketAddress server;
+	private final DatagramChannel lab;
+	private final DatagramReceiver pc;
+	private DatagramReceiver telemetry;
+	private boolean initiated;
+	private final RttEstimator rtt = new RttEstimator.Rfc6298(1, 200, 4000);
+	private final ByteBuffer discard = ByteBuffer.allocateDirect(16);  // the rest of a longer datagram is dropped
+
+	/**
+	 * Opens a session with the server and ports in UserProgram.
+	 *
+	 * @throws IOException if the server cannot be resolved or the client port cannot be bound
+	 */
+	public IthakiSession() throws IOException {
+		this(UserProgram.serverhost, UserProgram.serverport, UserProgram.clientport);
+	}
+
+	/**
+	 * @param host       the name or address of the server
+	 * @param serverport the port the server receives requests on
+	 * @param clientport the local port the server sends replies to
+	 * @throws IOException if the server cannot be resolved or the client port cannot be bound
+	 */
+	public IthakiSession(String host, int serverport, int clientport) throws IOException {
+		server = new InetSocketAddress(InetAddress.getByName(host), serverport);
+		lab = DatagramChannel.open();
+		lab.connect(server);
+		pc = new DatagramReceiver(clientport);
+		pc.channel().setOption(StandardSocketOptions.SO_RCVBUF, 1 << 20);
+	}
+
+	/**
+	 * Sends a request to the server. The buffer is rewound first, so the same buffer can be sent many times.
+	 *
+	 * @param request the request
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void send(ByteBuffer request) throws IOException {
+		request.rewind();
+		lab.write(request);
+	}
+
+	/**
+	 * Receives a reply on the client port.
+	 *
+	 * @see DatagramReceiver#receive(ByteBuffer, long)
+	 */
+	public int receive(ByteBuffer dst, long timeout) throws IOException {
+		return pc.receive(dst, timeout);
+	}
+
+	/**
+	 * Receives a reply on the client port, waiting no later than the deadline.
+	 *
+	 * @see DatagramReceiver#receiveUntil(ByteBuffer, long)
+	 */
+	public int receiveUntil(ByteBuffer dst, long deadline) throws IOException {
+		return pc.receiveUntil(dst, deadline);
+	}
+
+	/**
+	 * Throws away the packets that are waiting on the client port, without waiting for more.
+	 *
+	 * @return the number of packets thrown away
+	 * @throws IOException if an I/O error occurs
+	 */
+	public int drain() throws IOException {
+		int count = 0;
+		while (pc.poll(discard) >= 0) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the time one retransmission timeout from now, as a System.nanoTime() value
+	 */
+	public long deadline() {
+		return deadline(System.nanoTime());
+	}
+
+	/**
+	 * @param from a System.nanoTime() value, usually the time the request was sent
+	 * @return the time one retransmission timeout after <code>from</code>
+	 */
+	public long deadline(long from) {
+		return from + (long) (rtt.getRto() * 1000000);
+	}
+
+	/**
+	 * Updates the round trip time estimate with a measured sample.
+	 *
+	 * @param ms the round trip time in milliseconds
+	 */
+	public void sampleRtt(double ms) {
+		rtt.sample(ms);
+	}
+
+	/**
+	 * @return the current retransmission timeout in milliseconds, between 200 ms and 4 seconds
+	 */
+	public double rto() {
+		return rtt.getRto();
+	}
+
+	/**
+	 * Creates a timer to retransmit requests on this session, with the rto of the session doubled after every
+	 * retransmission up to 4 seconds.
+	 *
+	 * @param maxRetries how many times a request is sent again before giving up on it
+	 * @return the timer
+	 */
+	public RetransmitTimer retransmitTimer(int maxRetries) {
+		return new RetransmitTimer(rtt, 4000, maxRetries);
+	}
+
+	/**
+	 * @return the number of receives on the client port that ended without a packet
+	 */
+	public long timeouts() {
+		return pc.timeouts();
+	}
+
+	/**
+	 * @return the receiver bound to the client port
+	 */
+	public DatagramReceiver receiver() {
+		return pc;
+	}
+
+	/**
+	 * Returns the receiver for the packets the copter pushes to the given port, binding it the first time.
+	 *
+	 * @param port the local port of the copter telemetry
+	 * @return the receiver
+	 * @throws IOException if the port cannot be bound
+	 */
+	public DatagramReceiver telemetry(int port) throws IOException {
+		if (telemetry == null) {
+			telemetry = new DatagramReceiver(port);
+		}
+		return telemetry;
+	}
+
+	/**
+	 * @return the address of the server
+	 */
+	public InetSocketAddress server() {
+		return server;
+	}
+
+	/**
+	 * Marks the session as initiated.
+	 *
+	 * @return true the first time it is called, when the echo packets still have to be sent
+	 */
+	boolean initiate() {
+		if (initiated) {
+			return false;
+		}
+		initiated = true;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		lab.close();
+		pc.close();
+		if (telemetry != null) {
+			telemetry.close();
+		}
+	}
+}
@@ -0,0 +1,494 @@
+package ithaki;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A stand-in for the UDP side of the Ithaki server that runs on the local machine, so the methods of UserProgram
+ * can be measured and tested offline and at rates the lab does not allow. It answers the same requests:
+ * <ul>
+ * <li><code>echo_request_code=E....</code> with a 32 byte packet, and <code>echo_request_codeT00=E....</code>
+ * with a 54 byte packet that also carries a temperature;</li>
+ * <li><code>image_request_code=M....</code> with a JPEG image cut in packets of UDP=L bytes (128 if not given),
+ * all at once, or one packet per NEXT with FLOW=ON; a request with DIR= only moves the camera;</li>
+ * <li><code>sound_request_code=A....T|Fxxx</code> with xxx DPCM packets of 128 bytes and
+ * <code>sound_request_code=A....AQFxxx</code> with xxx AQDPCM packets of 132 bytes, a tone paced at one packet per
+ * packet time of 8000 samples per second;</li>
+ * </ul>
+ * and once a client has sent a request, it pushes a copter telemetry message to its telemetry port (48078) every
+ * second. Replies go to the address of the client, on the client port.
+ * Every packet the simulator sends goes through an emulated link with a loss rate, a one-way delay, a random
+ * jitter added to the delay (so packets may be reordered, as on a real path) and a bandwidth that spaces the
+ * packets by their size. Requests are lost at the same rate. All settings must be made before start().
+ */
+public class IthakiSimulator implements Closeable {
+
+	private static final Pattern UDP = Pattern.compile("UDP=(\\d+)");
+	private static final Pattern SOUND = Pattern.compile("sound_request_code=A\\d*(AQF|T|F)(\\d+)");
+
+	/**
+	 * A packet waiting on the emulated link until its delivery time.
+	 */
+	private static final class Packet implements Comparable<Packet> {
+		final long deliver;
+		final long order;
+		final byte[] data;
+		final SocketAddress to;
+
+		Packet(long deliver, long order, byte[] data, SocketAddress to) {
+			this.deliver = deliver;
+			this.order = order;
+			this.data = data;
+			this.to = to;
+		}
+
+		@Override
+		public int compareTo(Packet other) {
+			if (deliver != other.deliver) {
+				return deliver < other.deliver ? -1 : 1;
+			}
+			return Long.compare(order, other.order);
+		}
+	}
+
+	private final int serverport;
+	private final int clientport;
+	private int telemetryPort = 48078;
+	private long telemetryInterval = 1000;
+	private int imageSize = 16000;
+	private long soundPacketMillis = 32;
+	private double loss;
+	private long delay;
+	private long jitter;
+	private long bandwidth;
+
+	private final Random random = new Random(1);
+	private final PriorityQueue<Packet> link = new PriorityQueue<Packet>();
+	private long linkFree;          // when the emulated link has sent everything queued on it, in ns
+	private long order;
+	private DatagramChannel channel;
+	private ExecutorService workers;
+	private volatile boolean closed;
+	private boolean telemetryStarted;
+
+	// the image being sent with the flow mechanism, one fragment per NEXT
+	private byte[] flowImage;
+	private int flowPosition;
+	private int flowSize;
+	private SocketAddress flowClient;
+
+	private long requests;
+	private long sent;
+	private long dropped;
+
+	/**
+	 * @param serverport the local port to receive the requests on
+	 * @param clientport the port of the client to send the replies to
+	 */
+	public IthakiSimulator(int serverport, int clientport) {
+		this.serverport = serverport;
+		this.clientport = clientport;
+	}
+
+	/**
+	 * @param loss the probability that a packet, request or reply, is lost
+	 */
+	public void setLoss(double loss) {
+		this.loss = loss;
+	}
+
+	/**
+	 * @param delay the one-way delay of the replies in milliseconds
+	 */
+	public void setDelay(long delay) {
+		this.delay = delay;
+	}
+
+	/**
+	 * @param jitter the largest random delay added to every reply in milliseconds
+	 */
+	public void setJitter(long jitter) {
+		this.jitter = jitter;
+	}
+
+	/**
+	 * @param bandwidth the speed of the link in bits per second, 0 for no limit
+	 */
+	public void setBandwidth(long bandwidth) {
+		this.bandwidth = bandwidth;
+	}
+
+	/**
+	 * @param imageSize the bytes of every image
+	 */
+	public void setImageSize(int imageSize) {
+		this.imageSize = imageSize;
+	}
+
+	/**
+	 * @param soundPacketMillis the time between sound packets in milliseconds, 0 to send them as fast as the link
+	 *        allows
+	 */
+	public void setSoundPacketMillis(long soundPacketMillis) {
+		this.soundPacketMillis = soundPacketMillis;
+	}
+
+	/**
+	 * @param port     the port of the client to push the telemetry to
+	 * @param interval the time between telemetry messages in milliseconds
+	 */
+	public void setTelemetry(int port, long interval) {
+		this.telemetryPort = port;
+		this.telemetryInterval = interval;
+	}
+
+	/**
+	 * Binds the server port and starts answering requests.
+	 *
+	 * @throws IOException if the port cannot be bound
+	 */
+	public void start() throws IOException {
+		channel = DatagramChannel.open();
+		channel.bind(new InetSocketAddress(serverport));
+		workers = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "simulator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				receive();
+			}
+		});
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				deliver();
+			}
+		});
+	}
+
+	/**
+	 * @return the local port the requests are received on, useful when the simulator was started on port 0
+	 */
+	public int port() throws IOException {
+		return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * @return a line with the number of requests received and packets sent and lost
+	 */
+	public synchronized String summary() {
+		return "requests=" + requests + " sent=" + sent + " dropped=" + dropped;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		synchronized (this) {
+			notifyAll();
+		}
+		if (workers != null) {
+			workers.shutdownNow();
+		}
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	private void receive() {
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		try {
+			while (!closed) {
+				buffer.clear();
+				InetSocketAddress from = (InetSocketAddress) channel.receive(buffer);
+				synchronized (this) {
+					requests++;
+					if (loss > 0 && random.nextDouble() < loss) {
+						dropped++;
+						continue;
+					}
+				}
+				buffer.flip();
+				String request = new String(buffer.array(), 0, buffer.limit(), "US-ASCII").trim();
+				answer(request, from.getAddress());
+			}
+		} catch (ClosedChannelException e) {
+			// the simulator was closed
+		} catch (IOException e) {
+			if (!closed) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void answer(String request, final InetAddress host) {
+		final InetSocketAddress client = new InetSocketAddress(host, clientport);
+		startTelemetry(host);
+		if (request.startsWith("echo_request_code")) {
+			String time = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss").format(new Date());
+			if (request.contains("T00")) {
+				send(fixed("PSTART " + time + " T00=+" + (20 + random.nextInt(10)) + "." + random.nextInt(10)
+						+ " PSTOP", 54), client);
+			} else {
+				send(fixed("PSTART " + time + " PSTOP", 32), client);
+			}
+		} else if (request.equals("NEXT")) {
+			sendNextFragment();
+		} else if (request.startsWith("image_request_code")) {
+			if (request.contains("DIR=")) {
+				return;  // moves the camera, no reply
+			}
+			Matcher udp = UDP.matcher(request);
+			int size = udp.find() ? Integer.parseInt(udp.group(1)) : 128;
+			byte[] image = image();
+			if (request.contains("FLOW=ON")) {
+				synchronized (this) {
+					flowImage = image;
+					flowPosition = 0;
+					flowSize = size;
+					flowClient = client;
+				}
+			} else {
+				for (int position = 0; position < image.length; position += size) {
+					send(slice(image, position, size), client);
+				}
+			}
+		} else if (request.startsWith("sound_request_code")) {
+			Matcher sound = SOUND.matcher(request);
+			if (sound.find()) {
+				final boolean aq = sound.group(1).equals("AQF");
+				final int packets = Integer.parseInt(sound.group(2));
+				workers.execute(new Runnable() {
+					@Override
+					public void run() {
+						sendSound(aq, packets, client);
+					}
+				});
+			}
+		}
+	}
+
+	private void sendNextFragment() {
+		byte[] fragment;
+		SocketAddress client;
+		synchronized (this) {
+			if (flowImage == null || flowPosition >= flowImage.length) {
+				return;
+			}
+			fragment = slice(flowImage, flowPosition, flowSize);
+			flowPosition += flowSize;
+			client = flowClient;
+		}
+		send(fragment, client);
+	}
+
+	/**
+	 * Sends a tone, encoded as DPCM (differences of -8..7 on 8 bit samples) or AQDPCM (differences of -8..7 times
+	 * the step, with a mean and a step in the first 4 bytes of every packet).
+	 */
+	private void sendSound(boolean aq, int packets, SocketAddress client) {
+		int current = 0;
+		int step = 200;
+		long due = System.nanoTime();
+		for (int k = 0; k < packets && !closed; k++) {
+			byte[] packet = new byte[aq ? 132 : 128];
+			int offset = 0;
+			if (aq) {
+				packet[2] = (byte) step;
+				packet[3] = (byte) (step >> 8);
+				offset = 4;
+			}
+			for (int i = 0; i < 256; i++) {
+				double t = (k * 256 + i) / 8000.0;
+				int target = (int) ((aq ? 8000 : 60) * Math.sin(2 * Math.PI * 440 * t));
+				int d = Math.max(-8, Math.min(7, aq ? (target - current) / step : target - current));
+				current += aq ? d * step : d;
+				int nibble = d + 8;
+				int b = offset + i / 2;
+				boolean firstNibble = (i & 1) == 0;
+				if (aq == firstNibble) {
+					packet[b] |= nibble << 4;  // AQDPCM puts the first difference in the high nibble
+				} else {
+					packet[b] |= nibble;
+				}
+			}
+			send(packet, client);
+			if (soundPacketMillis > 0) {
+				due += soundPacketMillis * 1000000;
+				long wait = (due - System.nanoTime()) / 1000000;
+				if (wait > 0) {
+					try {
+						Thread.sleep(wait);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	private synchronized void startTelemetry(final InetAddress host) {
+		if (telemetryStarted || telemetryPort <= 0) {
+			return;
+		}
+		telemetryStarted = true;
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				InetSocketAddress copter = new InetSocketAddress(host, telemetryPort);
+				SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+				while (!closed) {
+					int motor = 150 + random.nextInt(50);
+					String line = "ITHAKICOPTER IP=" + host.getHostAddress() + " TIME=" + format.format(new Date())
+							+ " LMOTOR=" + motor + " RMOTOR=" + motor + " ALTITUDE=" + (180 + random.nextInt(60))
+							+ " TEMPERATURE=+" + (20 + random.nextInt(5)) + "." + (10 + random.nextInt(90))
+							+ " PRESSURE=" + (1000 + random.nextInt(20)) + "." + (10 + random.nextInt(90)) + " ";
+					send(line.getBytes(), copter);
+					try {
+						Thread.sleep(telemetryInterval);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Puts a packet on the emulated link.
+	 */
+	private synchronized void send(byte[] data, SocketAddress to) {
+		if (loss > 0 && random.nextDouble() < loss) {
+			dropped++;
+			return;
+		}
+		long now = System.nanoTime();
+		long depart = now;
+		if (bandwidth > 0) {
+			linkFree = Math.max(linkFree, now) + (long) (data.length * 8 * 1e9 / bandwidth);
+			depart = linkFree;
+		}
+		long deliver = depart + delay * 1000000 + (jitter > 0 ? (long) (random.nextDouble() * jitter * 1000000) : 0);
+		link.add(new Packet(deliver, order++, data, to));
+		notifyAll();
+	}
+
+	/**
+	 * Sends every packet of the emulated link when its delivery time comes.
+	 */
+	private void deliver() {
+		try {
+			while (!closed) {
+				Packet packet;
+				synchronized (this) {
+					while (!closed && (link.isEmpty() || link.peek().deliver > System.nanoTime())) {
+						if (link.isEmpty()) {
+							wait();
+						} else {
+							long wait = link.peek().deliver - System.nanoTime();
+							wait(Math.max(1, wait / 1000000), 0);
+						}
+					}
+					if (closed) {
+						return;
+					}
+					packet = link.poll();
+					sent++;
+				}
+				channel.send(ByteBuffer.wrap(packet.data), packet.to);
+			}
+		} catch (InterruptedException e) {
+			// the simulator was closed
+		} catch (IOException e) {
+			if (!closed) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Makes a JPEG-like image: the start of image marker, bytes that never contain 0xFF and the end of image
+	 * marker.
+	 */
+	private synchronized byte[] image() {
+		byte[] image = new byte[Math.max(4, imageSize)];
+		random.nextBytes(image);
+		for (int i = 0; i < image.length; i++) {
+			if (image[i] == (byte) 0xFF) {
+				image[i] = 0;
+			}
+		}
+		image[0] = (byte) 0xFF;
+		image[1] = (byte) 0xD8;
+		image[image.length - 2] = (byte) 0xFF;
+		image[image.length - 1] = (byte) 0xD9;
+		return image;
+	}
+
+	private static byte[] slice(byte[] data, int position, int size) {
+		int length = Math.min(size, data.length - position);
+		byte[] slice = new byte[length];
+		System.arraycopy(data, position, slice, 0, length);
+		return slice;
+	}
+
+	/**
+	 * Pads or cuts a reply to the exact size of the replies of the server.
+	 */
+	private static byte[] fixed(String reply, int size) {
+		byte[] bytes = new byte[size];
+		byte[] text = reply.getBytes();
+		for (int i = 0; i < size; i++) {
+			bytes[i] = i < text.length ? text[i] : (byte) ' ';
+		}
+		return bytes;
+	}
+
+	/**
+	 * Runs the simulator until it is killed. Point the client at it with -Dithaki.host=127.0.0.1.
+	 *
+	 * @param args optional settings: loss (0..1), delay (ms), jitter (ms) and bandwidth (bits per second), in
+	 *        this order
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		IthakiSimulator simulator = new IthakiSimulator(UserProgram.serverport, UserProgram.clientport);
+		if (args.length > 0) {
+			simulator.setLoss(Double.parseDouble(args[0]));
+		}
+		if (args.length > 1) {
+			simulator.setDelay(Long.parseLong(args[1]));
+		}
+		if (args.length > 2) {
+			simulator.setJitter(Long.parseLong(args[2]));
+		}
+		if (args.length > 3) {
+			simulator.setBandwidth(Long.parseLong(args[3]));
+		}
+		simulator.start();
+		System.out.println("Ithaki simulator on port " + simulator.port() + ", replies to port " + UserProgram.clientport);
+		while (true) {
+			Thread.sleep(10000);
+			System.out.println(simulator.summary());
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package ithaki;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Smooths the arrival of audio packets before they are played. Decoded packets (frames) are put in the buffer
+ * with their sequence number, and a playout thread takes one frame every frame time and passes it to the line,
+ * so the audio keeps its pace however the packets arrive.
+ * The playout delay follows the arrival jitter, estimated as in RFC 3550 from the difference between the time
+ * between two arrivals and the time between their frames. Playout starts once the buffer holds the target delay,
+ * and when it runs dry (an underrun) the target is built up again by stretching the audio with concealed frames.
+ * A frame that is missing while later ones are waiting was lost and is concealed in its place: the previous frame
+ * is repeated, halving its volume every time, so a gap fades out instead of playing garbage or clicking into
+ * silence. A frame that arrives after its turn was played is late and thrown away.
+ * The buffer holds a fixed number of frames; put() waits for room if the packets arrive faster than they play.
+ * The packets of the lab server carry no sequence number, so sequence() numbers them in the order they arrive,
+ * and infers a loss only once the arrivals keep coming a whole frame time or more behind the pace they are sent
+ * at.
+ */
+public class JitterBuffer implements Closeable {
+
+	private final int frameBytes;
+	private final long frameNanos;
+	private final boolean sixteenBit;
+	private final SourceDataLine line;
+	private final byte[][] frames;
+	private final boolean[] present;
+	private final byte[] last;        // the frame played last, to conceal with
+	private final byte[] out;
+	private final Thread playout;
+
+	private long next;                // the sequence number of the frame to play next
+	private long highest = -1;        // the highest sequence number put so far
+	private boolean finished;
+	private long lastArrival;
+	private long lastSeq;
+	private long anchor;              // the arrival time of frame 0 on the fastest path seen, for sequence()
+	private long numbered = -1;       // the last sequence number given by sequence()
+	private long numberedArrival;     // and the arrival time of its frame
+	private long behind;              // the frames it arrived behind its slot
+	private double jitter;            // in nanoseconds
+	private int concealedInRow;
+	private long underruns;
+	private long late;
+	private long concealed;
+
+	/**
+	 * Creates the buffer and starts the playout thread.
+	 *
+	 * @param format   the format of the samples, 8 or 16 bit signed PCM
+	 * @param frameBytes the bytes of one frame (one decoded packet)
+	 * @param capacity the number of frames the buffer holds
+	 * @param line     the line to play on, or null
+	 */
+	public JitterBuffer(AudioFormat format, int frameBytes, int capacity, SourceDataLine line) {
+		int sampleBytes = format.getSampleSizeInBits() / 8;
+		this.frameBytes = frameBytes;
+		this.frameNanos = Math.round(frameBytes / sampleBytes * 1e9 / format.getSampleRate());
+		this.sixteenBit = sampleBytes == 2;
+		this.line = line;
+		this.frames = new byte[capacity][frameBytes];
+		this.present = new boolean[capacity];
+		this.last = new byte[frameBytes];
+		this.out = new byte[frameBytes];
+		playout = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				play();
+			}
+		}, "playout");
+		playout.setDaemon(true);
+		playout.start();
+	}
+
+	/**
+	 * Puts a frame in the buffer, waiting if the buffer is full.
+	 *
+	 * @param seq    the sequence number of the frame, counting from 0
+	 * @param frame  the samples of the frame
+	 * @param offset where the frame starts in <code>frame</code>
+	 * @throws IOException if interrupted while waiting for room
+	 */
+	public synchronized void put(long seq, byte[] frame, int offset) throws IOException {
+		long now = System.nanoTime();
+		if (lastArrival != 0 && seq > lastSeq) {
+			double d = Math.abs((now - lastArrival) - (seq - lastSeq) * (double) frameNanos);
+			jitter += (d - jitter) / 16;
+		}
+		if (seq > lastSeq || lastArrival == 0) {
+			lastArrival = now;
+			lastSeq = seq;
+		}
+		if (seq < next) {
+			late++;
+			return;
+		}
+		try {
+			while (seq >= next + frames.length) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while buffering audio");
+		}
+		int slot = (int) (seq % frames.length);
+		System.arraycopy(frame, offset, frames[slot], 0, frameBytes);
+		present[slot] = true;
+		highest = Math.max(highest, seq);
+		notifyAll();
+	}
+
+	/**
+	 * Numbers a frame of a stream whose packets carry no sequence number. Every frame gets the number after the
+	 * previous one, so a frame held back by a delay spike stays in its place and is put late, or is absorbed by
+	 * the buffer. Frame n is expected at anchor + n * frame time, where the anchor comes from the frame that
+	 * arrived earliest relative to its slot. A frame that arrives some frames behind its slot may be delayed or may
+	 * follow lost frames; the two cannot be told apart yet. If the next frame also arrives at least half a frame
+	 * time after it, and not in the burst that ends a delay spike, and it is still behind its slot, the frames
+	 * it is behind by were lost, and it gets the number of its slot.
+	 * A step in the delay of the path that lasts looks the same as a loss.
+	 *
+	 * @param arrival the arrival time of the frame, a System.nanoTime() value
+	 * @return the sequence number to put the frame with
+	 */
+	public synchronized long sequence(long arrival) {
+		long seq = numbered + 1;
+		if (numbered >= 0) {
+			long now = Math.max(0, arrival - anchor - seq * frameNanos) / frameNanos;
+			boolean paced = arrival - numberedArrival >= frameNanos / 2;
+			if (paced && now > 0 && behind > 0) {
+				long lost = Math.min(now, behind);
+				seq += lost;
+				now -= lost;
+			}
+			behind = now;
+		}
+		if (numbered < 0 || arrival - seq * frameNanos < anchor) {
+			anchor = arrival - seq * frameNanos;
+		}
+		numbered = seq;
+		numberedArrival = arrival;
+		return seq;
+	}
+
+	/**
+	 * @param seq a sequence number
+	 * @return when the frame with this number is expected to arrive, as a System.nanoTime() value, or
+	 *         Long.MAX_VALUE if sequence() has not numbered a frame yet
+	 */
+	public synchronized long due(long seq) {
+		return numbered < 0 ? Long.MAX_VALUE : anchor + seq * frameNanos;
+	}
+
+	/**
+	 * Marks the end of the track. The frames still in the buffer are played, then the playout thread ends.
+	 */
+	public synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+
+	/**
+	 * Finishes the track and waits until everything in the buffer has been played.
+	 *
+	 * @throws IOException if interrupted while waiting
+	 */
+	@Override
+	public void close() throws IOException {
+		finish();
+		try {
+			playout.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while playing the end of the track");
+		}
+	}
+
+	/**
+	 * @return the number of times the buffer ran dry and had to be built up again
+	 */
+	public synchronized long underruns() {
+		return underruns;
+	}
+
+	/**
+	 * @return the number of frames that arrived after their turn and were thrown away
+	 */
+	public synchronized long late() {
+		return late;
+	}
+
+	/**
+	 * @return the number of concealed frames played, for lost frames and while the buffer was built up again
+	 */
+	public synchronized long concealed() {
+		return concealed;
+	}
+
+	/**
+	 * @return the estimated arrival jitter in milliseconds
+	 */
+	public synchronized double jitter() {
+		return jitter / 1e6;
+	}
+
+	/**
+	 * @return the playout delay the buffer aims for, in frames: one frame plus four times the jitter, at least 2
+	 */
+	public synchronized int targetFrames() {
+		int target = (int) Math.ceil(4 * jitter / frameNanos) + 1;
+		return Math.max(2, Math.min(frames.length / 2, target));
+	}
+
+	/**
+	 * @return a line with the counters, for the result files
+	 */
+	public synchronized String summary() {
+		return "underruns=" + underruns + " late=" + late + " concealed=" + concealed + " jitter=" + jitter() + "ms"
+				+ " delay=" + targetFrames() * frameNanos / 1000000 + "ms";
+	}
+
+	private void play() {
+		try {
+			// wait for the first frames, up to the target delay
+			synchronized (this) {
+				while (!finished && highest + 1 - next < targetFrames()) {
+					wait();
+				}
+			}
+			long due = System.nanoTime();
+			boolean rebuffering = false;
+			while (true) {
+				synchronized (this) {
+					int slot = (int) (next % frames.length);
+					if (finished && next > highest) {
+						return;
+					}
+					if (rebuffering && (finished || highest + 1 - next >= targetFrames())) {
+						rebuffering = false;
+					}
+					if (!rebuffering && present[slot]) {
+						System.arraycopy(frames[slot], 0, out, 0, frameBytes);
+						System.arraycopy(out, 0, last, 0, frameBytes);
+						present[slot] = false;
+						next++;
+						concealedInRow = 0;
+					} else {
+						if (!rebuffering && highest < next && !finished) {
+							underruns++;  // nothing to play, stretch the audio until the delay is built up again
+							rebuffering = true;
+						}
+						if (!rebuffering) {
+							next++;  // the frame was lost, play a concealed frame in its place
+						}
+						conceal();
+						concealed++;
+					}
+					notifyAll();
+				}
+				if (line != null) {
+					line.write(out, 0, frameBytes);
+				}
+				due += frameNanos;
+				long wait;
+				while ((wait = due - System.nanoTime()) > 0) {
+					Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				}
+			}
+		} catch (InterruptedException e) {
+			// the buffer is abandoned
+		} finally {
+			synchronized (this) {
+				finished = true;
+				next = Long.MAX_VALUE / 2;  // release a put() that waits for room
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Fills the output frame with the last frame played, at half the volume of the previous concealed frame.
+	 */
+	private void conceal() {
+		concealedInRow++;
+		int shift = Math.min(concealedInRow, 16);
+		if (sixteenBit) {
+			for (int i = 0; i < frameBytes; i += 2) {
+				int sample = (short) ((last[i] & 0xFF) | (last[i + 1] << 8)) >> shift;
+				out[i] = (byte) sample;
+				out[i + 1] = (byte) (sample >> 8);
+			}
+		} else {
+			for (int i = 0; i < frameBytes; i++) {
+				out[i] = (byte) (last[i] >> shift);
+			}
+		}
+	}
+}
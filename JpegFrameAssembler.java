@@ -0,0 +1,132 @@
+package ithaki;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Puts the fragments of a JPEG frame together in a file. Every fragment is written with its exact length, and the
+ * frame is complete as soon as the bytes received so far end with the JPEG end of image marker (0xFF 0xD9), or a
+ * fragment shorter than the packet size arrives. A frame whose size is a multiple of the packet size therefore
+ * ends with its last fragment instead of waiting for a timeout.
+ * Only the end of the received bytes is checked for the marker, so an end of image marker inside an embedded
+ * thumbnail ends the frame early only if it falls on the last two bytes of a fragment. The fragments that follow it
+ * then arrive after the frame is complete and are not part of it.
+ * With the flow mechanism a fragment that never arrives cannot be asked for again: NEXT always releases the
+ * following one. Such gaps are counted with skip(), and a frame with a gap is damaged even if it ends with the
+ * marker.
+ */
+public class JpegFrameAssembler {
+
+	private final int packetSize;
+	private WritableByteChannel out;
+	private int last = -1;        // the last byte received, to find a marker split between two fragments
+	private long bytes;
+	private int fragments;
+	private int skipped;
+	private boolean complete;
+	private boolean endMarker;
+
+	/**
+	 * @param packetSize the size of the fragments sent by the server (L)
+	 */
+	public JpegFrameAssembler(int packetSize) {
+		this.packetSize = packetSize;
+	}
+
+	/**
+	 * Starts a new frame.
+	 *
+	 * @param out where the bytes of the frame are written
+	 */
+	public void start(WritableByteChannel out) {
+		this.out = out;
+		last = -1;
+		bytes = 0;
+		fragments = 0;
+		skipped = 0;
+		complete = false;
+		endMarker = false;
+	}
+
+	/**
+	 * Writes a fragment to the frame.
+	 *
+	 * @param fragment the received fragment, from its position to its limit; it is consumed
+	 * @return true if the frame is complete
+	 * @throws IOException if writing to the output fails
+	 */
+	public boolean append(ByteBuffer fragment) throws IOException {
+		int length = fragment.remaining();
+		if (length > 0) {
+			int end = fragment.limit();
+			int beforeLast = length > 1 ? fragment.get(end - 2) & 0xFF : last;
+			last = fragment.get(end - 1) & 0xFF;
+			if (beforeLast == 0xFF && last == 0xD9) {
+				complete = true;
+				endMarker = true;
+			}
+			while (fragment.hasRemaining()) {
+				out.write(fragment);
+			}
+			fragments++;
+		}
+		bytes += length;
+		if (length < packetSize) {  // also an empty fragment, when the receive timed out
+			complete = true;
+		}
+		return complete;
+	}
+
+	/**
+	 * Counts fragments of the current frame that were lost and will not be received.
+	 *
+	 * @param count the fragments lost
+	 */
+	public void skip(int count) {
+		skipped += count;
+	}
+
+	/**
+	 * @return true if the end of the frame has been received
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return true if the frame ended with the end of image marker, false if it was cut short, for example by
+	 *         an empty fragment after a timeout
+	 */
+	public boolean hasEndMarker() {
+		return endMarker;
+	}
+
+	/**
+	 * @return the bytes written to the current frame
+	 */
+	public long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the fragments received for the current frame
+	 */
+	public int fragments() {
+		return fragments;
+	}
+
+	/**
+	 * @return the fragments of the current frame that were skipped
+	 */
+	public int skipped() {
+		return skipped;
+	}
+
+	/**
+	 * @return true if fragments of the current frame were skipped, so the bytes written have a hole
+	 */
+	public boolean damaged() {
+		return skipped > 0;
+	}
+}
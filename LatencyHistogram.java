@@ -0,0 +1,139 @@
+package ithaki;
+
+/**
+ * A fixed-memory latency histogram with logarithmic buckets, in the style of HdrHistogram.
+ * Values are recorded in nanoseconds. Values below 1024 are counted exactly; above that every power of two
+ * is split in 512 linear sub-buckets, so any recorded value is reported with a relative error below 0.2%.
+ * The histogram covers values up to about 18 minutes; larger values are counted in the last bucket but the
+ * maximum is still kept exactly.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 10;                        // values below 2^10 are exact
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+	private static final int MAX_VALUE_BITS = 40;                          // 2^40 ns, about 18 minutes
+	private static final int BUCKETS = MAX_VALUE_BITS - SUB_BUCKET_BITS;
+
+	private final long[] counts = new long[SUB_BUCKET_COUNT + BUCKETS * SUB_BUCKET_HALF];
+	private long totalCount;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	/**
+	 * Records one value.
+	 *
+	 * @param value the value in nanoseconds; negative values are counted as 0
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[indexOf(value)]++;
+		totalCount++;
+		sum += value;
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Returns the value below which the given percentage of the recorded values falls. The returned value is
+	 * the highest value that is counted in the same bucket, but never more than the maximum recorded value.
+	 *
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the value at the percentile in nanoseconds, or 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount);
+		if (target < 1) {
+			target = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return Math.min(highestValueOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return totalCount == 0 ? 0 : (double) sum / totalCount;
+	}
+
+	/**
+	 * Clears all recorded values.
+	 */
+	public void reset() {
+		java.util.Arrays.fill(counts, 0);
+		totalCount = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	/**
+	 * Returns a one line summary of the histogram in milliseconds:
+	 * count, min, mean, p50, p90, p99, p99.9 and max.
+	 *
+	 * @return the summary
+	 */
+	public String summary() {
+		return "count=" + totalCount
+				+ " min=" + millis(getMin())
+				+ " mean=" + millis((long) getMean())
+				+ " p50=" + millis(getValueAtPercentile(50))
+				+ " p90=" + millis(getValueAtPercentile(90))
+				+ " p99=" + millis(getValueAtPercentile(99))
+				+ " p99.9=" + millis(getValueAtPercentile(99.9))
+				+ " max=" + millis(getMax());
+	}
+
+	private static String millis(long nanos) {
+		return String.format(java.util.Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	/**
+	 * Bucket k (k >= 1) holds the values in [2^(9+k), 2^(10+k)) in sub-buckets of width 2^k.
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int k = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS + 1;
+		if (k > BUCKETS) {
+			return SUB_BUCKET_COUNT + BUCKETS * SUB_BUCKET_HALF - 1;
+		}
+		return SUB_BUCKET_COUNT + (k - 1) * SUB_BUCKET_HALF + (int) ((value >> k) - SUB_BUCKET_HALF);
+	}
+
+	private static long highestValueOf(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int k = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+		long sub = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+		return ((sub + 1) << k) - 1;
+	}
+}
@@ -0,0 +1,129 @@
+package ithaki;
+
+/**
+ * Decodes the nibbles of DPCM and AQDPCM packets with precomputed tables. Both codecs store two differences of
+ * 4 bits in every byte with an offset of 8; DPCM puts the first difference in the low nibble and AQDPCM in the
+ * high one. The two differences of every possible byte are looked up in tables of 256 entries instead of being
+ * masked, shifted and offset per byte, and the AQDPCM samples are clamped to +-32000 without branches.
+ * Nothing is allocated: the caller passes the arrays to decode into and reuses them for every packet.
+ * The results are the same as the per-byte arithmetic the sound methods used before; NibbleDecoderTest checks
+ * this on random packets.
+ */
+public final class NibbleDecoder {
+
+	/** The low nibble of every byte, minus 8. */
+	private static final byte[] LOW = new byte[256];
+	/** The high nibble of every byte, minus 8. */
+	private static final byte[] HIGH = new byte[256];
+
+	static {
+		for (int b = 0; b < 256; b++) {
+			LOW[b] = (byte) ((b & 15) - 8);
+			HIGH[b] = (byte) (((b & 240) >> 4) - 8);
+		}
+	}
+
+	private NibbleDecoder() {
+	}
+
+	/**
+	 * Splits the bytes of a DPCM packet into differences, low nibble first.
+	 *
+	 * @param packet the packet
+	 * @param offset the first byte to decode
+	 * @param length the number of bytes to decode
+	 * @param dif    receives 2 * length differences from index 0
+	 */
+	public static void dpcm(byte[] packet, int offset, int length, int[] dif) {
+		for (int n = 0, d = 0; n < length; n++) {
+			int b = packet[offset + n] & 0xFF;
+			dif[d++] = LOW[b];
+			dif[d++] = HIGH[b];
+		}
+	}
+
+	/**
+	 * Splits the bytes of an AQDPCM packet into differences, high nibble first, each multiplied by the step.
+	 *
+	 * @param packet the packet
+	 * @param offset the first byte of the differences, after the mean and the step
+	 * @param length the number of bytes to decode
+	 * @param step   the step of the packet
+	 * @param dif    receives 2 * length differences from index 0
+	 */
+	public static void aqdpcm(byte[] packet, int offset, int length, int step, int[] dif) {
+		for (int n = 0, d = 0; n < length; n++) {
+			int b = packet[offset + n] & 0xFF;
+			dif[d++] = HIGH[b] * step;
+			dif[d++] = LOW[b] * step;
+		}
+	}
+
+	/**
+	 * Adds up the differences of a DPCM packet to 8 bit samples. The sums wrap around like the bytes they are
+	 * stored in.
+	 *
+	 * @param dif      the differences
+	 * @param count    the number of samples
+	 * @param previous the last sample of the previous packet
+	 * @param first    whether this is the first packet of the track, whose first sample is 0
+	 * @param samples  receives the samples
+	 */
+	public static void dpcmSamples(int[] dif, int count, byte previous, boolean first, byte[] samples) {
+		dpcmSamples(dif, count, previous, first, samples, 0);
+	}
+
+	/**
+	 * Same as dpcmSamples(int[], int, byte, boolean, byte[]), writing the samples from <code>offset</code>.
+	 */
+	public static void dpcmSamples(int[] dif, int count, byte previous, boolean first, byte[] samples, int offset) {
+		byte sample = first ? 0 : (byte) (dif[0] + previous);
+		samples[offset] = sample;
+		for (int p = 1; p < count; p++) {
+			sample = (byte) (dif[p] + sample);
+			samples[offset + p] = sample;
+		}
+	}
+
+	/**
+	 * Adds up the differences of an AQDPCM packet and adds the mean. The running sum is clamped to +-32000, and
+	 * the first sample continues from the last output (mean included) of the previous packet.
+	 *
+	 * @param dif      the differences, already multiplied by the step
+	 * @param count    the number of samples
+	 * @param mean     the mean of the packet
+	 * @param previous the last output sample of the previous packet
+	 * @param first    whether this is the first packet of the track, whose first sum is 0
+	 * @param samples  receives the output samples
+	 * @return the last output sample, to pass as <code>previous</code> with the next packet
+	 */
+	public static int aqdpcmSamples(int[] dif, int count, int mean, int previous, boolean first, int[] samples) {
+		return aqdpcmSamples(dif, count, mean, previous, first, samples, 0);
+	}
+
+	/**
+	 * Same as aqdpcmSamples(int[], int, int, int, boolean, int[]), writing the samples from <code>offset</code>.
+	 */
+	public static int aqdpcmSamples(int[] dif, int count, int mean, int previous, boolean first, int[] samples,
+			int offset) {
+		int sum = first ? 0 : clamp(dif[0] + previous);
+		samples[offset] = sum + mean;
+		for (int i = 1; i < count; i++) {
+			sum = clamp(dif[i] + sum);
+			samples[offset + i] = sum + mean;
+		}
+		return samples[offset + count - 1];
+	}
+
+	/**
+	 * Clamps a value to +-32000 without branches: the excess over a limit is masked by its own sign and
+	 * subtracted.
+	 */
+	static int clamp(int x) {
+		int over = x - 32000;
+		x -= over & ~(over >> 31);
+		int under = x + 32000;
+		x -= under & (under >> 31);
+		return x;
+	}
+}
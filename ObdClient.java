@@ -0,0 +1,176 @@
+package ithaki;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Sends OBD-II mode 01 requests over one TCP connection and keeps several of them outstanding, so the rate of
+ * samples is set by how fast the ECU answers and not by a round trip per request. The answers come back in the
+ * order of the requests, so every answer is matched to the oldest request still outstanding.
+ * The connection is read through one buffer in blocks, and the answers are cut into lines at every carriage
+ * return or &gt; prompt, so an answer split over several reads, or several answers in one read, are framed
+ * the same way. Empty lines (the prompt after a carriage return) are skipped. The lines are cut into a
+ * preallocated array and parsed there by an ObdParser, so receiving allocates nothing.
+ */
+public class ObdClient implements Closeable {
+
+	private static final byte[] DIGITS = "0123456789ABCDEF".getBytes();
+
+	private final SocketChannel channel;
+	private final int depth;
+	private final ByteBuffer in = ByteBuffer.allocateDirect(4096);
+	private final ByteBuffer out = ByteBuffer.allocateDirect(64);
+	private final int[] pending;   // the PIDs of the outstanding requests, oldest at head
+	private int head;
+	private int outstanding;
+	private final byte[] line = new byte[128];
+	private int lineLength;
+	private int lastPid;
+	private long requests;
+	private long answers;
+
+	/**
+	 * Connects to the OBD-II server.
+	 *
+	 * @param host  the name or address of the server
+	 * @param port  the port of the server
+	 * @param depth the most requests that may be outstanding at the same time
+	 * @throws IOException if the connection fails
+	 */
+	public ObdClient(String host, int port, int depth) throws IOException {
+		channel = SocketChannel.open(new InetSocketAddress(host, port));
+		channel.socket().setTcpNoDelay(true);
+		this.depth = Math.max(1, depth);
+		pending = new int[this.depth];
+		in.flip();  // empty, ready to be read from
+	}
+
+	/**
+	 * @return true if another request can be sent without going over the depth
+	 */
+	public boolean canSend() {
+		return outstanding < depth;
+	}
+
+	/**
+	 * Sends the request "01 PID\r".
+	 *
+	 * @param pid the PID, 0 to 255
+	 * @throws IOException if writing fails
+	 * @throws IllegalStateException if the depth is already outstanding
+	 */
+	public void send(int pid) throws IOException {
+		if (!canSend()) {
+			throw new IllegalStateException("already " + depth + " requests outstanding");
+		}
+		out.clear();
+		out.put((byte) '0').put((byte) '1').put((byte) ' ');
+		out.put(DIGITS[pid >> 4 & 15]).put(DIGITS[pid & 15]);
+		out.put((byte) '\r');
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		pending[(head + outstanding) % depth] = pid;
+		outstanding++;
+		requests++;
+	}
+
+	/**
+	 * Waits for the answer to the oldest outstanding request and parses it.
+	 *
+	 * @param parser receives the answer
+	 * @return true if the answer was parsed and is for the PID that was requested, false otherwise
+	 * @throws IOException if reading fails or the server closed the connection
+	 * @throws IllegalStateException if no request is outstanding
+	 */
+	public boolean receive(ObdParser parser) throws IOException {
+		readLine();
+		return lineLength <= line.length && parser.parse(line, 0, lineLength) && parser.pid().code() == lastPid;
+	}
+
+	/**
+	 * Waits for the answer to the oldest outstanding request.
+	 *
+	 * @return the answer, without the carriage return, for example "41 0C 1A F8"
+	 * @throws IOException if reading fails or the server closed the connection
+	 * @throws IllegalStateException if no request is outstanding
+	 */
+	public String receive() throws IOException {
+		readLine();
+		return new String(line, 0, Math.min(lineLength, line.length));
+	}
+
+	/**
+	 * Cuts the next non empty line into the line array. A line longer than the array is cut short, and
+	 * lineLength is left over the length of the array.
+	 */
+	private void readLine() throws IOException {
+		if (outstanding == 0) {
+			throw new IllegalStateException("no request outstanding");
+		}
+		lineLength = 0;
+		while (true) {
+			while (in.hasRemaining()) {
+				byte b = in.get();
+				if (b == '\r' || b == '>') {
+					if (lineLength > 0) {
+						lastPid = pending[head];
+						head = (head + 1) % depth;
+						outstanding--;
+						answers++;
+						return;
+					}
+				} else if (b != '\n') {
+					if (lineLength < line.length) {
+						line[lineLength] = b;
+					}
+					lineLength++;
+				}
+			}
+			in.clear();
+			int n = channel.read(in);
+			in.flip();
+			if (n < 0) {
+				throw new EOFException("the OBD-II server closed the connection");
+			}
+		}
+	}
+
+	/**
+	 * @return the PID of the request answered by the last receive()
+	 */
+	public int lastPid() {
+		return lastPid;
+	}
+
+	/**
+	 * @return the requests sent and not answered yet
+	 */
+	public int outstanding() {
+		return outstanding;
+	}
+
+	/**
+	 * @return the number of requests sent on the connection
+	 */
+	public long requests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of answers received on the connection
+	 */
+	public long answers() {
+		return answers;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
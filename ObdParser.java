@@ -0,0 +1,110 @@
+package ithaki;
+
+/**
+ * Parses OBD-II mode 01 answers such as "41 0C 1A F8" straight from the bytes they were received in. Hex digits
+ * are looked up in a table, the bytes of the answer are kept in a preallocated array and the value is computed
+ * with the formula of the PID from the ObdPid registry, so parsing allocates nothing and one parser is reused for
+ * every answer of a connection. The spaces between the bytes are optional, as an ELM327 can leave them out.
+ */
+public final class ObdParser {
+
+	/** The most bytes of an answer: mode, PID and up to 4 data bytes, as in one CAN frame, plus a spare. */
+	private static final int MAX_BYTES = 7;
+
+	/** The value of every hex digit, -1 for any other character. */
+	private static final byte[] HEX = new byte[256];
+
+	static {
+		for (int c = 0; c < 256; c++) {
+			HEX[c] = -1;
+		}
+		for (int d = 0; d < 10; d++) {
+			HEX['0' + d] = (byte) d;
+		}
+		for (int d = 0; d < 6; d++) {
+			HEX['A' + d] = (byte) (10 + d);
+			HEX['a' + d] = (byte) (10 + d);
+		}
+	}
+
+	private final int[] bytes = new int[MAX_BYTES];
+	private int count;
+	private ObdPid pid;
+	private double value;
+
+	/**
+	 * Parses one answer, without its carriage return.
+	 *
+	 * @param line   the buffer holding the answer
+	 * @param offset the first character of the answer
+	 * @param length the characters of the answer
+	 * @return true if the answer is a mode 01 answer for a registered PID with all its data bytes; false for
+	 *         anything else, for example "?" or "NO DATA", and then the state of the parser is undefined
+	 */
+	public boolean parse(byte[] line, int offset, int length) {
+		count = 0;
+		pid = null;
+		int high = -1;  // the first digit of a byte, until the second one comes
+		for (int i = offset, end = offset + length; i < end; i++) {
+			int c = line[i] & 0xFF;
+			if (c == ' ') {
+				if (high >= 0) {
+					return false;  // a byte of one digit
+				}
+				continue;
+			}
+			int digit = HEX[c];
+			if (digit < 0) {
+				return false;
+			}
+			if (high < 0) {
+				high = digit;
+				continue;
+			}
+			if (count == MAX_BYTES) {
+				return false;
+			}
+			bytes[count++] = high << 4 | digit;
+			high = -1;
+		}
+		if (high >= 0 || count < 2 || bytes[0] != 0x41) {
+			return false;
+		}
+		ObdPid known = ObdPid.get(bytes[1]);
+		if (known == null || count - 2 < known.bytes()) {
+			return false;
+		}
+		pid = known;
+		value = known.value(bytes[2], count > 3 ? bytes[3] : 0);
+		return true;
+	}
+
+	/**
+	 * @return the PID of the last answer parsed
+	 */
+	public ObdPid pid() {
+		return pid;
+	}
+
+	/**
+	 * @return the value of the last answer parsed
+	 */
+	public double value() {
+		return value;
+	}
+
+	/**
+	 * @return the data bytes of the last answer parsed, after the mode and the PID
+	 */
+	public int dataBytes() {
+		return count - 2;
+	}
+
+	/**
+	 * @param index the data byte, from 0
+	 * @return the data byte of the last answer parsed
+	 */
+	public int data(int index) {
+		return bytes[2 + index];
+	}
+}
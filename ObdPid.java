@@ -0,0 +1,133 @@
+package ithaki;
+
+/**
+ * An OBD-II mode 01 PID: how many data bytes its answer has and how they turn into a value. Every PID the
+ * program knows is in one registry, indexed by its code, so adding a PID is one register() line. All the
+ * formulas used here are linear in the raw value, which is A for one data byte and 256 * A + B for two:
+ * value = raw * multiplier / divisor + offset.
+ */
+public final class ObdPid {
+
+	private static final ObdPid[] REGISTRY = new ObdPid[256];
+
+	static {
+		register(0x04, "Calculated engine load", "%", 1, 100, 255, 0);
+		register(0x05, "Coolant temperature", "C", 1, 1, 1, -40);
+		register(0x06, "Short term fuel trim", "%", 1, 100, 128, -100);
+		register(0x07, "Long term fuel trim", "%", 1, 100, 128, -100);
+		register(0x0C, "Engine RPM", "rpm", 2, 1, 4, 0);
+		register(0x0D, "Vehicle speed", "km/h", 1, 1, 1, 0);
+		register(0x0F, "Intake air temperature", "C", 1, 1, 1, -40);
+		register(0x10, "Mass air flow", "g/s", 2, 1, 100, 0);
+		register(0x11, "Throttle position", "%", 1, 100, 255, 0);
+		register(0x1F, "Engine run time", "s", 2, 1, 1, 0);
+	}
+
+	private final int code;
+	private final String name;
+	private final String unit;
+	private final int bytes;
+	private final double multiplier;
+	private final double divisor;
+	private final double offset;
+
+	private ObdPid(int code, String name, String unit, int bytes, double multiplier, double divisor, double offset) {
+		this.code = code;
+		this.name = name;
+		this.unit = unit;
+		this.bytes = bytes;
+		this.multiplier = multiplier;
+		this.divisor = divisor;
+		this.offset = offset;
+	}
+
+	/**
+	 * Adds a PID to the registry, or replaces the one with the same code.
+	 *
+	 * @param code       the PID, 0 to 255
+	 * @param name       what the PID measures
+	 * @param unit       the unit of the value
+	 * @param bytes      the data bytes of the answer, 1 or 2
+	 * @param multiplier the raw value is multiplied by this
+	 * @param divisor    and divided by this
+	 * @param offset     and this is added
+	 * @return the PID
+	 */
+	public static synchronized ObdPid register(int code, String name, String unit, int bytes, double multiplier,
+			double divisor, double offset) {
+		if (bytes != 1 && bytes != 2) {
+			throw new IllegalArgumentException("a PID has 1 or 2 data bytes, not " + bytes);
+		}
+		ObdPid pid = new ObdPid(code & 0xFF, name, unit, bytes, multiplier, divisor, offset);
+		REGISTRY[pid.code] = pid;
+		return pid;
+	}
+
+	/**
+	 * @param code the PID, 0 to 255
+	 * @return the registered PID, or null if it is not known
+	 */
+	public static ObdPid get(int code) {
+		return REGISTRY[code & 0xFF];
+	}
+
+	/**
+	 * @param code the PID as two hex digits, for example "0C"
+	 * @return the registered PID
+	 * @throws IllegalArgumentException if the PID is not known
+	 */
+	public static ObdPid get(String code) {
+		ObdPid pid = get(Integer.parseInt(code, 16));
+		if (pid == null) {
+			throw new IllegalArgumentException("unknown PID " + code);
+		}
+		return pid;
+	}
+
+	/**
+	 * Computes the value from the data bytes of an answer.
+	 *
+	 * @param a the first data byte
+	 * @param b the second data byte, ignored by a PID with one data byte
+	 * @return the value
+	 */
+	public double value(int a, int b) {
+		int raw = bytes == 2 ? (a << 8) | b : a;
+		return raw * multiplier / divisor + offset;
+	}
+
+	/**
+	 * @return whether every value is a whole number, so it can be saved without decimals
+	 */
+	public boolean integral() {
+		return divisor == 1 && multiplier == Math.rint(multiplier) && offset == Math.rint(offset);
+	}
+
+	public int code() {
+		return code;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public String unit() {
+		return unit;
+	}
+
+	public int bytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the PID as two hex digits, as it is sent
+	 */
+	public String hex() {
+		return (code < 16 ? "0" : "") + Integer.toHexString(code).toUpperCase();
+	}
+
+	@Override
+	public String toString() {
+		return hex() + " " + name + " (" + unit + ")";
+	}
+}
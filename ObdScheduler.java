@@ -0,0 +1,181 @@
+package ithaki;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Polls several OBD-II PIDs on one connection, each at its own rate. Sample k of a PID is released at
+ * start + k / rate and is due one period later; among the released samples the one due first is requested first
+ * (earliest deadline first), so a fast signal never starves a slow one and PIDs with the same rate take turns.
+ * The requests go through an ObdClient, so several of them are outstanding while the answers come back.
+ * A PID that falls more than one period behind, because the vehicle answers slower than the rates add up to,
+ * skips the samples it missed instead of sending them in a burst; the skips are counted in the summary.
+ * Every answer is parsed with an ObdParser and saved as a line "ms value", with the time in milliseconds since the
+ * start of the run.
+ */
+public class ObdScheduler {
+
+	/**
+	 * A PID polled at a fixed rate.
+	 */
+	private static final class Signal {
+		final ObdPid pid;
+		final long period;
+		final ResultSink.Output output;
+		long release;   // when the next sample may be requested, in System.nanoTime() time
+		long samples;
+		long skipped;
+		long errors;
+
+		Signal(ObdPid pid, long period, ResultSink.Output output) {
+			this.pid = pid;
+			this.period = period;
+			this.output = output;
+		}
+	}
+
+	private final ObdClient client;
+	private final List<Signal> signals = new ArrayList<Signal>();
+	private final Signal[] byPid = new Signal[256];
+	private final ObdParser parser = new ObdParser();
+	private long elapsed;
+
+	/**
+	 * @param client the connection to poll on
+	 */
+	public ObdScheduler(ObdClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Adds a PID to poll.
+	 *
+	 * @param pid    the PID
+	 * @param rate   the samples per second
+	 * @param output the file the timestamped values are saved to
+	 * @throws IllegalArgumentException if the PID was already added or the rate is not positive
+	 */
+	public void add(ObdPid pid, double rate, ResultSink.Output output) {
+		if (!(rate > 0)) {
+			throw new IllegalArgumentException("rate must be positive: " + rate);
+		}
+		if (byPid[pid.code()] != null) {
+			throw new IllegalArgumentException("PID " + pid.hex() + " added twice");
+		}
+		Signal signal = new Signal(pid, (long) (1e9 / rate), output);
+		signals.add(signal);
+		byPid[pid.code()] = signal;
+	}
+
+	/**
+	 * Polls all the PIDs for the given time and waits for the answers still outstanding at the end.
+	 *
+	 * @param millis the duration of the run in milliseconds
+	 * @throws IOException if the connection or a file fails
+	 */
+	public void run(long millis) throws IOException {
+		long start = System.nanoTime();
+		long end = start + millis * 1000000;
+		for (Signal signal : signals) {
+			signal.release = start;
+		}
+		try {
+			while (true) {
+				long now = System.nanoTime();
+				if (now >= end && client.outstanding() == 0) {
+					break;
+				}
+				while (now < end && client.canSend()) {
+					Signal signal = next(now);
+					if (signal == null) {
+						break;
+					}
+					client.send(signal.pid.code());
+				}
+				if (client.outstanding() > 0) {
+					answer(client.receive(parser), start);
+					continue;
+				}
+				long wait = Math.min(earliestRelease(), end) - System.nanoTime();
+				if (wait > 0) {
+					Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("OBD-II polling interrupted");
+		} finally {
+			elapsed = System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Picks the released signal with the earliest deadline and moves its release on by one period, skipping the
+	 * periods it fell behind by.
+	 *
+	 * @return the signal to request, or null if none is released yet
+	 */
+	private Signal next(long now) {
+		Signal best = null;
+		for (Signal signal : signals) {
+			if (signal.release <= now && (best == null || signal.release + signal.period < best.release + best.period)) {
+				best = signal;
+			}
+		}
+		if (best != null) {
+			long behind = (now - best.release) / best.period;
+			best.skipped += behind;
+			best.release += (behind + 1) * best.period;
+		}
+		return best;
+	}
+
+	private long earliestRelease() {
+		long earliest = Long.MAX_VALUE;
+		for (Signal signal : signals) {
+			earliest = Math.min(earliest, signal.release);
+		}
+		return earliest;
+	}
+
+	/**
+	 * Saves an answer to the file of its PID. An answer that cannot be parsed is counted and its sample is
+	 * requested again at once.
+	 */
+	private void answer(boolean parsed, long start) throws IOException {
+		Signal signal = byPid[client.lastPid()];
+		long ms = (System.nanoTime() - start) / 1000000;
+		if (!parsed) {
+			signal.errors++;
+			signal.release = Math.min(signal.release, System.nanoTime());
+			return;
+		}
+		double value = parser.value();
+		signal.output.write(ms + " " + (signal.pid.integral() ? String.valueOf((long) value) : String.valueOf(value)));
+		signal.samples++;
+	}
+
+	/**
+	 * @return for every PID the samples saved, the rate reached, the samples skipped and the answers that could
+	 *         not be parsed
+	 */
+	public String summary() {
+		StringBuilder summary = new StringBuilder();
+		double seconds = elapsed / 1e9;
+		for (Signal signal : signals) {
+			if (summary.length() > 0) {
+				summary.append('\n');
+			}
+			summary.append("PID ").append(signal.pid.hex())
+					.append(" samples=").append(signal.samples)
+					.append(String.format(Locale.ROOT, " rate=%.2f/%.2fHz",
+							seconds > 0 ? signal.samples / seconds : 0, 1e9 / signal.period))
+					.append(" skipped=").append(signal.skipped)
+					.append(" errors=").append(signal.errors);
+		}
+		return summary.toString();
+	}
+}
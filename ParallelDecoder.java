@@ -0,0 +1,224 @@
+package ithaki;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decodes long DPCM and AQDPCM captures on all cores. Decoding is a running sum over the whole track, so it is
+ * split into a parallel prefix sum:
+ * <ol>
+ * <li>every packet adds up its own differences from 0, in parallel, and keeps its total and (for AQDPCM) the
+ * smallest and largest partial sum;</li>
+ * <li>the value each packet continues from is carried across the packets in one serial pass over the totals;</li>
+ * <li>every packet adds the value it continues from to its partial sums, in parallel.</li>
+ * </ol>
+ * The DPCM sum wraps around in a byte and is never clamped (the old +-128 checks could not fire), so every DPCM
+ * packet is exact. The AQDPCM sum is clamped to +-32000, which changes everything after it in the packet: a packet
+ * whose partial sums plus the carried value stay within the limits is exact, and only a packet where the clamp
+ * fires is decoded again serially in the carry pass. The first AQDPCM packet, which starts from 0 without its
+ * first difference, is decoded serially too.
+ * The result is the same as decoding the packets one after the other with NibbleDecoder; ParallelDecoderTest
+ * checks this, and ParallelDecoderBenchmark in the benchmarks project measures the throughput for every number of
+ * threads.
+ */
+public final class ParallelDecoder {
+
+	/** The bytes of a DPCM packet. */
+	public static final int DPCM_PACKET = 128;
+	/** The bytes of an AQDPCM packet: mean, step and 128 bytes of differences. */
+	public static final int AQDPCM_PACKET = 132;
+	/** The samples of a packet of either codec. */
+	public static final int SAMPLES = 256;
+
+	/** The packets one task decodes without splitting further. */
+	private static final int THRESHOLD = 64;
+
+	private ParallelDecoder() {
+	}
+
+	/**
+	 * Work done on a range of packets.
+	 */
+	private interface Body {
+		void run(int from, int to);
+	}
+
+	/**
+	 * Runs a body over a range of packets, split in halves until the range is small enough.
+	 */
+	private static final class Range extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final transient Body body;
+		private final int from;
+		private final int to;
+
+		Range(Body body, int from, int to) {
+			this.body = body;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				body.run(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Range(body, from, middle), new Range(body, middle, to));
+		}
+	}
+
+	/**
+	 * Decodes DPCM packets received one after the other.
+	 *
+	 * @param capture the packets, DPCM_PACKET bytes each
+	 * @param packets the number of packets
+	 * @param pool    the pool to decode on
+	 * @return the 8 bit samples, SAMPLES per packet
+	 */
+	public static byte[] dpcm(final byte[] capture, int packets, ForkJoinPool pool) {
+		final byte[] samples = new byte[packets * SAMPLES];
+		final byte[] carry = new byte[packets];
+
+		// 1: the running sum of every packet from 0; the first packet is already exact
+		pool.invoke(new Range(new Body() {
+			@Override
+			public void run(int from, int to) {
+				int[] dif = new int[SAMPLES];
+				for (int k = from; k < to; k++) {
+					NibbleDecoder.dpcm(capture, k * DPCM_PACKET, DPCM_PACKET, dif);
+					NibbleDecoder.dpcmSamples(dif, SAMPLES, (byte) 0, k == 0, samples, k * SAMPLES);
+				}
+			}
+		}, 0, packets));
+
+		// 2: every packet continues from the last sample of the one before
+		for (int k = 1; k < packets; k++) {
+			carry[k] = (byte) (carry[k - 1] + samples[k * SAMPLES - 1]);
+		}
+
+		// 3: add what every packet continues from
+		pool.invoke(new Range(new Body() {
+			@Override
+			public void run(int from, int to) {
+				for (int k = Math.max(1, from); k < to; k++) {
+					byte c = carry[k];
+					for (int i = k * SAMPLES, end = i + SAMPLES; i < end; i++) {
+						samples[i] = (byte) (samples[i] + c);
+					}
+				}
+			}
+		}, 0, packets));
+		return samples;
+	}
+
+	/**
+	 * Decodes AQDPCM packets received one after the other.
+	 *
+	 * @param capture the packets, AQDPCM_PACKET bytes each
+	 * @param packets the number of packets
+	 * @param pool    the pool to decode on
+	 * @return the samples, mean included, SAMPLES per packet
+	 */
+	public static int[] aqdpcm(final byte[] capture, int packets, ForkJoinPool pool) {
+		final int[] samples = new int[packets * SAMPLES];
+		final int[] min = new int[packets];
+		final int[] max = new int[packets];
+		final int[] carry = new int[packets];
+		final boolean[] serial = new boolean[packets];
+
+		// 1: the running sum of every packet from 0, without the mean, and its smallest and largest value
+		pool.invoke(new Range(new Body() {
+			@Override
+			public void run(int from, int to) {
+				int[] dif = new int[SAMPLES];
+				for (int k = Math.max(1, from); k < to; k++) {
+					int base = k * AQDPCM_PACKET;
+					NibbleDecoder.aqdpcm(capture, base + 4, AQDPCM_PACKET - 4, step(capture, base), dif);
+					int sum = 0;
+					int lo = Integer.MAX_VALUE;
+					int hi = Integer.MIN_VALUE;
+					for (int i = 0, s = k * SAMPLES; i < SAMPLES; i++, s++) {
+						sum += dif[i];
+						samples[s] = sum;
+						lo = Math.min(lo, sum);
+						hi = Math.max(hi, sum);
+					}
+					min[k] = lo;
+					max[k] = hi;
+				}
+			}
+		}, 0, packets));
+
+		// 2: carry the last output across the packets. A packet where the clamp fires is decoded serially here
+		int[] dif = new int[SAMPLES];
+		int previous = 0;
+		for (int k = 0; k < packets; k++) {
+			int base = k * AQDPCM_PACKET;
+			int mean = mean(capture, base);
+			if (k == 0 || previous + max[k] > 32000 || previous + min[k] < -32000) {
+				NibbleDecoder.aqdpcm(capture, base + 4, AQDPCM_PACKET - 4, step(capture, base), dif);
+				previous = NibbleDecoder.aqdpcmSamples(dif, SAMPLES, mean, previous, k == 0, samples, k * SAMPLES);
+				serial[k] = true;
+			} else {
+				carry[k] = previous + mean;
+				previous += samples[k * SAMPLES + SAMPLES - 1] + mean;
+			}
+		}
+
+		// 3: add the carried value and the mean to the packets that were not decoded serially
+		pool.invoke(new Range(new Body() {
+			@Override
+			public void run(int from, int to) {
+				for (int k = from; k < to; k++) {
+					if (serial[k]) {
+						continue;
+					}
+					int c = carry[k];
+					for (int i = k * SAMPLES, end = i + SAMPLES; i < end; i++) {
+						samples[i] += c;
+					}
+				}
+			}
+		}, 0, packets));
+		return samples;
+	}
+
+	/**
+	 * Decodes DPCM packets one after the other, as the sound methods do.
+	 */
+	public static byte[] dpcmSerial(byte[] capture, int packets) {
+		byte[] samples = new byte[packets * SAMPLES];
+		int[] dif = new int[SAMPLES];
+		for (int k = 0; k < packets; k++) {
+			NibbleDecoder.dpcm(capture, k * DPCM_PACKET, DPCM_PACKET, dif);
+			NibbleDecoder.dpcmSamples(dif, SAMPLES, k == 0 ? 0 : samples[k * SAMPLES - 1], k == 0, samples, k * SAMPLES);
+		}
+		return samples;
+	}
+
+	/**
+	 * Decodes AQDPCM packets one after the other, as the sound methods do.
+	 */
+	public static int[] aqdpcmSerial(byte[] capture, int packets) {
+		int[] samples = new int[packets * SAMPLES];
+		int[] dif = new int[SAMPLES];
+		int previous = 0;
+		for (int k = 0; k < packets; k++) {
+			int base = k * AQDPCM_PACKET;
+			NibbleDecoder.aqdpcm(capture, base + 4, AQDPCM_PACKET - 4, step(capture, base), dif);
+			previous = NibbleDecoder.aqdpcmSamples(dif, SAMPLES, mean(capture, base), previous, k == 0, samples, k * SAMPLES);
+		}
+		return samples;
+	}
+
+	private static int mean(byte[] capture, int base) {
+		return (capture[base + 1] << 8) + (capture[base] & 0xFF);
+	}
+
+	private static int step(byte[] capture, int base) {
+		return (capture[base + 3] << 8) + (capture[base + 2] & 0xFF);
+	}
+}
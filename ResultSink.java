@@ -0,0 +1,228 @@
+package ithaki;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Writes result values to files from a background thread, so the receive loops do not wait for the disk.
+ * Values are passed to the writer thread through a bounded queue. The writer takes everything that is waiting
+ * in the queue at once, writes it through buffered streams and flushes only when the queue is empty, so the
+ * files are written in batches. If the writer falls behind, the caller blocks until there is room in the queue;
+ * no value is ever dropped.
+ * Closing the sink writes everything still in the queue and closes all the files.
+ */
+public class ResultSink implements Closeable {
+
+	/**
+	 * A file opened through the sink. Every call writes one line.
+	 */
+	public final class Output {
+		private final OutputStream stream;
+
+		private Output(OutputStream stream) {
+			this.stream = stream;
+		}
+
+		public void write(long value) throws IOException {
+			put(new Entry(this, Entry.LONG, value, 0, null));
+		}
+
+		public void write(double value) throws IOException {
+			put(new Entry(this, Entry.DOUBLE, 0, value, null));
+		}
+
+		public void write(String value) throws IOException {
+			put(new Entry(this, Entry.STRING, 0, 0, value));
+		}
+
+		/**
+		 * Writes a copy of the bytes followed by the given line separator.
+		 */
+		public void write(byte[] buffer, int offset, int length, String separator) throws IOException {
+			byte[] copy = new byte[length];
+			System.arraycopy(buffer, offset, copy, 0, length);
+			put(new Entry(this, Entry.BYTES, 0, 0, new Object[] {copy, separator}));
+		}
+	}
+
+	private static final class Entry {
+		static final int LONG = 0;
+		static final int DOUBLE = 1;
+		static final int STRING = 2;
+		static final int BYTES = 3;
+		static final int CLOSE = 4;
+
+		final Output output;
+		final int kind;
+		final long longValue;
+		final double doubleValue;
+		final Object value;
+
+		Entry(Output output, int kind, long longValue, double doubleValue, Object value) {
+			this.output = output;
+			this.kind = kind;
+			this.longValue = longValue;
+			this.doubleValue = doubleValue;
+			this.value = value;
+		}
+	}
+
+	private static final byte[] NEWLINE = "\n".getBytes();
+
+	private final BlockingQueue<Entry> queue;
+	private final List<Output> outputs = new CopyOnWriteArrayList<Output>();  // also read by the writer thread
+	private final Thread writer;
+	private volatile IOException failure;
+	private boolean closed;
+
+	/**
+	 * Creates a sink with room for 8192 values in the queue.
+	 */
+	public ResultSink() {
+		this(8192);
+	}
+
+	/**
+	 * @param capacity the number of values that can wait in the queue
+	 */
+	public ResultSink(int capacity) {
+		queue = new ArrayBlockingQueue<Entry>(capacity);
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "result-sink");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Creates (or truncates) a file to write values to.
+	 *
+	 * @param filename the name of the file
+	 * @return the output to write the values of the file
+	 * @throws IOException if the file cannot be created
+	 */
+	public synchronized Output open(String filename) throws IOException {
+		Output output = new Output(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+		outputs.add(output);
+		return output;
+	}
+
+	/**
+	 * Writes every value still in the queue, then closes all the files.
+	 *
+	 * @throws IOException if writing any of the values failed
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		put(new Entry(null, Entry.CLOSE, 0, 0, null));
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while closing the result files");
+		}
+		for (Output output : outputs) {
+			try {
+				output.stream.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void put(Entry entry) throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+		try {
+			queue.put(entry);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while saving a result");
+		}
+	}
+
+	private void drain() {
+		ArrayList<Entry> batch = new ArrayList<Entry>();
+		try {
+			while (true) {
+				batch.add(queue.take());  // wait for the next value, then take everything that is waiting
+				queue.drainTo(batch);
+				for (Entry entry : batch) {
+					if (entry.kind == Entry.CLOSE) {
+						flushAll();
+						return;
+					}
+					if (failure == null) {
+						write(entry);
+					}
+				}
+				batch.clear();
+				if (queue.isEmpty() && failure == null) {
+					flushAll();
+				}
+			}
+		} catch (InterruptedException e) {
+			// the sink is abandoned
+		}
+	}
+
+	/**
+	 * A failed write is kept and thrown to the next caller. The writer thread keeps taking values from the queue,
+	 * so the receive loops never block on a dead writer.
+	 */
+	private void write(Entry entry) {
+		try {
+			OutputStream stream = entry.output.stream;
+			switch (entry.kind) {
+				case Entry.LONG:
+					stream.write(String.valueOf(entry.longValue).getBytes());
+					stream.write(NEWLINE);
+					break;
+				case Entry.DOUBLE:
+					stream.write(String.valueOf(entry.doubleValue).getBytes());
+					stream.write(NEWLINE);
+					break;
+				case Entry.STRING:
+					stream.write(((String) entry.value).getBytes());
+					stream.write(NEWLINE);
+					break;
+				default:
+					Object[] bytes = (Object[]) entry.value;
+					stream.write((byte[]) bytes[0]);
+					stream.write(((String) bytes[1]).getBytes());
+					break;
+			}
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	private void flushAll() {
+		try {
+			for (Output output : outputs) {
+				output.stream.flush();
+			}
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package ithaki;
+
+/**
+ * Decides when a request that got no answer is sent again. The timeout is the rto of an RttEstimator, doubled
+ * after every retransmission (exponential backoff) up to a maximum. Karn's rule is followed: an answer to a
+ * request that was retransmitted gives no rtt sample, because it is not known which copy was answered, and the
+ * backed-off timeout is kept until an answer to a request that was sent only once arrives.
+ */
+public class RetransmitTimer {
+
+	private final RttEstimator estimator;
+	private final double maxRto;
+	private final int maxRetries;
+	private int backoff = 1;
+	private int retries;
+	private boolean retransmitted;
+	private long firstSent;
+	private long lastSent;
+	private long retransmissions;
+
+	/**
+	 * @param estimator  gives the rto and receives the valid rtt samples
+	 * @param maxRto     the largest timeout after backoff in milliseconds
+	 * @param maxRetries how many times a request is sent again before giving up on it
+	 */
+	public RetransmitTimer(RttEstimator estimator, double maxRto, int maxRetries) {
+		this.estimator = estimator;
+		this.maxRto = maxRto;
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * Records that a new request was sent for the first time.
+	 *
+	 * @param now the send time as a System.nanoTime() value
+	 */
+	public void start(long now) {
+		firstSent = now;
+		lastSent = now;
+		retries = 0;
+		retransmitted = false;
+	}
+
+	/**
+	 * @return the time to give up waiting for the answer to the last copy sent, as a System.nanoTime() value
+	 */
+	public long deadline() {
+		return lastSent + (long) (Math.min(estimator.getRto() * backoff, maxRto) * 1000000);
+	}
+
+	/**
+	 * Called when the deadline passed without an answer. Doubles the timeout and records the retransmission.
+	 *
+	 * @param now the time the request is sent again, as a System.nanoTime() value
+	 * @return true if the request should be sent again, false if it has been retried too many times
+	 */
+	public boolean retransmit(long now) {
+		if (retries >= maxRetries) {
+			return false;
+		}
+		retries++;
+		retransmissions++;
+		retransmitted = true;
+		lastSent = now;
+		if (estimator.getRto() * backoff < maxRto) {
+			backoff *= 2;
+		}
+		return true;
+	}
+
+	/**
+	 * Called when the answer arrives. If the request was sent only once, the rtt is given to the estimator
+	 * (when <code>sample</code> is true) and the backoff is cleared.
+	 *
+	 * @param now    the arrival time as a System.nanoTime() value
+	 * @param sample whether the time since the request is a real rtt that the estimator should get
+	 */
+	public void acknowledged(long now, boolean sample) {
+		if (retransmitted) {
+			return;  // Karn's rule: the answer may belong to any copy
+		}
+		if (sample) {
+			estimator.sample((now - firstSent) / 1e6);
+		}
+		backoff = 1;
+	}
+
+	/**
+	 * @return true if the current request has been sent more than once
+	 */
+	public boolean isRetransmitted() {
+		return retransmitted;
+	}
+
+	/**
+	 * @return the number of retransmissions since the timer was created
+	 */
+	public long retransmissions() {
+		return retransmissions;
+	}
+}
@@ -0,0 +1,210 @@
+package ithaki;
+
+/**
+ * An incremental round trip time estimator. Every rtt sample updates the smoothed rtt, the rtt variation and the
+ * retransmission timeout in constant time and memory, so several estimators can run side by side on the same
+ * stream of samples for as long as needed.
+ * All values are in milliseconds.
+ */
+public interface RttEstimator {
+
+	/**
+	 * Updates the estimator with a new rtt sample.
+	 *
+	 * @param rtt the measured round trip time in milliseconds
+	 */
+	void sample(double rtt);
+
+	/** @return the smoothed rtt */
+	double getSrtt();
+
+	/** @return the rtt variation (s of the Jacobson algorithm) */
+	double getRttvar();
+
+	/** @return the retransmission timeout */
+	double getRto();
+
+	/** @return a short name used in output files */
+	String getName();
+
+	/**
+	 * The Jacobson algorithm as it was used in echo(): srtt = a*srtt + (1-a)*rtt, s = b*s + (1-b)*|srtt - rtt|,
+	 * rto = srtt + c*s. The first sample sets srtt = rtt and s = rtt/2.
+	 */
+	class Jacobson implements RttEstimator {
+		private final double a;
+		private final double b;
+		private final double c;
+		private double srtt;
+		private double s;
+		private double rto;
+		private boolean first = true;
+
+		public Jacobson(double a, double b, double c) {
+			this.a = a;
+			this.b = b;
+			this.c = c;
+		}
+
+		@Override
+		public void sample(double rtt) {
+			if (first) {
+				srtt = rtt;
+				s = rtt / 2;
+				first = false;
+			} else {
+				srtt = a * srtt + (1 - a) * rtt;
+				s = b * s + (1 - b) * Math.abs(srtt - rtt);
+			}
+			rto = srtt + c * s;
+		}
+
+		@Override
+		public double getSrtt() {
+			return srtt;
+		}
+
+		@Override
+		public double getRttvar() {
+			return s;
+		}
+
+		@Override
+		public double getRto() {
+			return rto;
+		}
+
+		@Override
+		public String getName() {
+			return "jacobson";
+		}
+	}
+
+	/**
+	 * The estimator of RFC 6298: alpha = 1/8, beta = 1/4, K = 4, with a clock granularity G and the rto kept
+	 * between a minimum and a maximum value. Until the first sample the rto is 1 second.
+	 */
+	class Rfc6298 implements RttEstimator {
+		private static final double ALPHA = 1.0 / 8;
+		private static final double BETA = 1.0 / 4;
+		private static final double K = 4;
+		private final double granularity;
+		private final double minRto;
+		private final double maxRto;
+		private double srtt;
+		private double rttvar;
+		private double rto = 1000;
+		private boolean first = true;
+
+		/**
+		 * Uses 1 ms clock granularity, 1 second minimum rto and 60 seconds maximum rto.
+		 */
+		public Rfc6298() {
+			this(1, 1000, 60000);
+		}
+
+		public Rfc6298(double granularity, double minRto, double maxRto) {
+			this.granularity = granularity;
+			this.minRto = minRto;
+			this.maxRto = maxRto;
+		}
+
+		@Override
+		public void sample(double rtt) {
+			if (first) {
+				srtt = rtt;
+				rttvar = rtt / 2;
+				first = false;
+			} else {
+				rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - rtt);  // rttvar is updated before srtt
+				srtt = (1 - ALPHA) * srtt + ALPHA * rtt;
+			}
+			rto = Math.min(maxRto, Math.max(minRto, srtt + Math.max(granularity, K * rttvar)));
+		}
+
+		@Override
+		public double getSrtt() {
+			return srtt;
+		}
+
+		@Override
+		public double getRttvar() {
+			return rttvar;
+		}
+
+		@Override
+		public double getRto() {
+			return rto;
+		}
+
+		@Override
+		public String getName() {
+			return "rfc6298";
+		}
+	}
+
+	/**
+	 * An estimator in the style of the Eifel retransmission timer (Ludwig and Sklower). The gain is fixed to 1/3,
+	 * falling rtt samples do not increase the variation, and the variation decays with the square of the gain,
+	 * so the rto follows the rtt closely without the spikes of the Jacobson algorithm after sudden drops.
+	 * rto = srtt + max(G, 2*rttvar).
+	 */
+	class Eifel implements RttEstimator {
+		private static final double GAIN = 1.0 / 3;
+		private final double granularity;
+		private double srtt;
+		private double rttvar;
+		private double rto;
+		private boolean first = true;
+
+		/**
+		 * Uses 1 ms clock granularity.
+		 */
+		public Eifel() {
+			this(1);
+		}
+
+		public Eifel(double granularity) {
+			this.granularity = granularity;
+		}
+
+		@Override
+		public void sample(double rtt) {
+			if (first) {
+				srtt = rtt;
+				rttvar = rtt / 2;
+				first = false;
+			} else {
+				double delta = rtt - srtt;
+				srtt += GAIN * delta;
+				double deltaVar = delta >= 0 ? delta - rttvar : -rttvar;  // falling rtt only lets the variation decay
+				if (deltaVar >= 0) {
+					rttvar += GAIN * deltaVar;
+				} else {
+					rttvar += GAIN * GAIN * deltaVar;
+				}
+			}
+			rto = srtt + Math.max(granularity, 2 * rttvar);
+		}
+
+		@Override
+		public double getSrtt() {
+			return srtt;
+		}
+
+		@Override
+		public double getRttvar() {
+			return rttvar;
+		}
+
+		@Override
+		public double getRto() {
+			return rto;
+		}
+
+		@Override
+		public String getName() {
+			return "eifel";
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package ithaki;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A stand-in for the TCP side of the Ithaki server that runs on the local machine, to measure the TCP clients of
+ * UserProgram offline. It listens on two ports:
+ * <ul>
+ * <li>the OBD-II port (29078), where every request <code>01 PID\r</code> is answered ELM-style with
+ * <code>41 PID XX\r</code> or <code>41 PID XX YY\r</code>, followed by the <code>&gt;</code> prompt, and anything
+ * else with <code>?\r</code>;</li>
+ * <li>the copter port (38048), where every <code>AUTO FLIGHTLEVEL=... LMOTOR=... RMOTOR=... PILOT</code> line is
+ * answered with a telemetry message of 113 bytes.</li>
+ * </ul>
+ * Every response can be delayed by a fixed time, and cut into segments of a few bytes that are flushed
+ * separately, so the clients see responses split across reads as on a slow link. Each connection is served by
+ * its own thread and the requests on it are answered in order. All settings must be made before start().
+ */
+public class TcpSimulator implements Closeable {
+
+	/** The length of a copter telemetry message. */
+	public static final int COPTER_MESSAGE = 113;
+
+	private final int obdPort;
+	private final int copterPort;
+	private long delay;
+	private int segment;
+	private boolean prompt = true;
+
+	private final Random random = new Random(1);
+	private ServerSocket obd;
+	private ServerSocket copter;
+	private ExecutorService workers;
+	private volatile boolean closed;
+	private long engineSeconds;
+
+	/**
+	 * @param obdPort    the local port for the OBD-II requests, 0 for any free port
+	 * @param copterPort the local port for the copter commands, 0 for any free port
+	 */
+	public TcpSimulator(int obdPort, int copterPort) {
+		this.obdPort = obdPort;
+		this.copterPort = copterPort;
+	}
+
+	/**
+	 * @param delay the time to wait before every response in milliseconds
+	 */
+	public void setDelay(long delay) {
+		this.delay = delay;
+	}
+
+	/**
+	 * @param segment the bytes written at a time for every response, 0 to write each response at once
+	 */
+	public void setSegment(int segment) {
+		this.segment = segment;
+	}
+
+	/**
+	 * @param prompt whether the OBD-II responses are followed by the &gt; prompt, as an ELM327 does
+	 */
+	public void setPrompt(boolean prompt) {
+		this.prompt = prompt;
+	}
+
+	/**
+	 * Binds both ports and starts accepting connections.
+	 *
+	 * @throws IOException if a port cannot be bound
+	 */
+	public void start() throws IOException {
+		obd = new ServerSocket();
+		obd.bind(new InetSocketAddress(obdPort));
+		copter = new ServerSocket();
+		copter.bind(new InetSocketAddress(copterPort));
+		workers = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "tcp-simulator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		accept(obd, true);
+		accept(copter, false);
+	}
+
+	/**
+	 * @return the local OBD-II port, useful when the simulator was started on port 0
+	 */
+	public int obdPort() {
+		return obd.getLocalPort();
+	}
+
+	/**
+	 * @return the local copter port, useful when the simulator was started on port 0
+	 */
+	public int copterPort() {
+		return copter.getLocalPort();
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		if (workers != null) {
+			workers.shutdownNow();
+		}
+		if (obd != null) {
+			obd.close();
+		}
+		if (copter != null) {
+			copter.close();
+		}
+	}
+
+	private void accept(final ServerSocket server, final boolean isObd) {
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				while (!closed) {
+					try {
+						final Socket socket = server.accept();
+						socket.setTcpNoDelay(true);
+						workers.execute(new Runnable() {
+							@Override
+							public void run() {
+								serve(socket, isObd);
+							}
+						});
+					} catch (IOException e) {
+						if (!closed) {
+							e.printStackTrace();
+						}
+						return;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Answers the requests of one connection, one line at a time, until the client closes it.
+	 */
+	private void serve(Socket socket, boolean isObd) {
+		try {
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = socket.getOutputStream();
+			StringBuilder request = new StringBuilder();
+			int b;
+			while ((b = in.read()) != -1) {
+				if (b == '\n') {
+					continue;
+				}
+				if (b != '\r') {
+					request.append((char) b);
+					continue;
+				}
+				byte[] response = isObd ? obdResponse(request.toString().trim()) : copterResponse(request.toString());
+				request.setLength(0);
+				if (delay > 0) {
+					Thread.sleep(delay);
+				}
+				write(out, response);
+			}
+		} catch (IOException e) {
+			// the client went away
+		} catch (InterruptedException e) {
+			// the simulator was closed
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing left to do
+			}
+		}
+	}
+
+	private void write(OutputStream out, byte[] response) throws IOException, InterruptedException {
+		if (segment <= 0) {
+			out.write(response);
+			out.flush();
+			return;
+		}
+		for (int position = 0; position < response.length; position += segment) {
+			out.write(response, position, Math.min(segment, response.length - position));
+			out.flush();
+			Thread.sleep(1);  // so the pieces leave as separate segments
+		}
+	}
+
+	/**
+	 * Answers a mode 01 request with plausible values for the PIDs the lab car reports.
+	 */
+	private byte[] obdResponse(String request) {
+		String[] parts = request.split(" ");
+		String end = prompt ? "\r>" : "\r";
+		if (parts.length != 2 || !parts[0].equals("01")) {
+			return ("?" + end).getBytes();
+		}
+		String pid = parts[1].toUpperCase();
+		int value;
+		int bytes = 1;
+		synchronized (this) {
+			if (pid.equals("1F")) {         // engine run time in s
+				value = (int) ++engineSeconds;
+				bytes = 2;
+			} else if (pid.equals("0C")) {  // engine rpm times 4
+				value = (800 + random.nextInt(2500)) * 4;
+				bytes = 2;
+			} else if (pid.equals("0F") || pid.equals("05")) {  // temperature plus 40
+				value = 40 + 20 + random.nextInt(70);
+			} else {                          // throttle, speed and any other one byte PID
+				value = random.nextInt(256);
+			}
+		}
+		String response = "41 " + pid + (bytes == 2 ? " " + hex(value >> 8) : "") + " " + hex(value & 0xFF);
+		return (response + end).getBytes();
+	}
+
+	/**
+	 * Answers a flight command with a telemetry message of exactly COPTER_MESSAGE bytes, ending with CR LF.
+	 */
+	private byte[] copterResponse(String command) {
+		String level = field(command, "FLIGHTLEVEL=", "0");
+		String lmotor = field(command, "LMOTOR=", "0");
+		String rmotor = field(command, "RMOTOR=", "0");
+		String line;
+		synchronized (this) {
+			line = "ITHAKICOPTER LMOTOR=" + lmotor + " RMOTOR=" + rmotor + " ALTITUDE=" + level + " TEMPERATURE=+"
+					+ (20 + random.nextInt(5)) + "." + (10 + random.nextInt(90)) + " PRESSURE="
+					+ (1000 + random.nextInt(20)) + "." + (10 + random.nextInt(90)) + " TIME="
+					+ new SimpleDateFormat("HH:mm:ss.SSS").format(new Date());
+		}
+		byte[] message = new byte[COPTER_MESSAGE];
+		byte[] text = line.getBytes();
+		for (int i = 0; i < COPTER_MESSAGE - 2; i++) {
+			message[i] = i < text.length ? text[i] : (byte) ' ';
+		}
+		message[COPTER_MESSAGE - 2] = '\r';
+		message[COPTER_MESSAGE - 1] = '\n';
+		return message;
+	}
+
+	private static String field(String line, String name, String missing) {
+		int start = line.indexOf(name);
+		if (start < 0) {
+			return missing;
+		}
+		start += name.length();
+		int end = line.indexOf(' ', start);
+		return line.substring(start, end < 0 ? line.length() : end);
+	}
+
+	private static String hex(int value) {
+		String hex = Integer.toHexString(value).toUpperCase();
+		return hex.length() == 1 ? "0" + hex : hex;
+	}
+
+	/**
+	 * Runs the simulator until it is killed. Point the client at it with -Dithaki.host=127.0.0.1.
+	 *
+	 * @param args optional settings: the delay of every response in ms and the segment size in bytes
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		TcpSimulator simulator = new TcpSimulator(UserProgram.obdport, UserProgram.coptertcpport);
+		if (args.length > 0) {
+			simulator.setDelay(Long.parseLong(args[0]));
+		}
+		if (args.length > 1) {
+			simulator.setSegment(Integer.parseInt(args[1]));
+		}
+		simulator.start();
+		System.out.println("OBD-II on port " + simulator.obdPort() + ", copter on port " + simulator.copterPort());
+		Thread.currentThread().join();
+	}
+}
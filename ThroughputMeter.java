@@ -0,0 +1,150 @@
+package ithaki;
+
+import java.io.IOException;
+
+/**
+ * Measures throughput over any number of window lengths at once, both in tumbling windows (consecutive windows
+ * that do not overlap) and in sliding windows (the last window length up to now).
+ * Received bytes are counted in a ring buffer of fixed-length buckets. Every sliding window keeps a running sum
+ * that is updated when a bucket enters or leaves it, so recording a packet costs a few additions no matter how
+ * many or how long the windows are.
+ */
+public class ThroughputMeter {
+
+	/**
+	 * Receives the throughput of every tumbling window when it closes.
+	 */
+	public interface Listener {
+		/**
+		 * @param meter         the meter, to read the sliding windows
+		 * @param window        the index of the window length, in the order given to the meter
+		 * @param bitsPerSecond the throughput of the window that just closed
+		 * @throws IOException  if the listener fails to save the value
+		 */
+		void windowClosed(ThroughputMeter meter, int window, long bitsPerSecond) throws IOException;
+	}
+
+	private final long bucketMillis;
+	private final long[] windows;      // window lengths in ms
+	private final int[] windowBuckets;  // window lengths in buckets
+	private final long[] ring;          // bytes per bucket
+	private final long[] slidingSum;    // bytes in the last windowBuckets[w] buckets
+	private final long[] tumbleBytes;   // bytes in the current tumbling window
+	private final long[] tumbleEnd;     // end time of the current tumbling window
+	private final Listener listener;
+	private final long startTime;
+	private long bucket;                // absolute number of the current bucket
+	private long lastTime;
+
+	/**
+	 * @param bucketMillis the resolution of the sliding windows in milliseconds
+	 * @param windows      the window lengths in milliseconds, each a multiple of bucketMillis
+	 * @param listener     receives the tumbling window results, may be null
+	 * @param now          the start time of the measurement in milliseconds
+	 */
+	public ThroughputMeter(long bucketMillis, long[] windows, Listener listener, long now) {
+		this.bucketMillis = bucketMillis;
+		this.windows = windows.clone();
+		this.windowBuckets = new int[windows.length];
+		this.slidingSum = new long[windows.length];
+		this.tumbleBytes = new long[windows.length];
+		this.tumbleEnd = new long[windows.length];
+		this.listener = listener;
+		this.startTime = now;
+		this.lastTime = now;
+		int longest = 1;
+		for (int w = 0; w < windows.length; w++) {
+			if (windows[w] <= 0 || windows[w] % bucketMillis != 0) {
+				throw new IllegalArgumentException("window " + windows[w] + " is not a multiple of " + bucketMillis);
+			}
+			windowBuckets[w] = (int) (windows[w] / bucketMillis);
+			longest = Math.max(longest, windowBuckets[w]);
+			tumbleEnd[w] = now + windows[w];
+		}
+		this.ring = new long[longest + 1];
+		this.bucket = Math.floorDiv(now, bucketMillis);
+	}
+
+	/**
+	 * Counts a received packet.
+	 *
+	 * @param now   the time of arrival in milliseconds
+	 * @param bytes the length of the packet
+	 * @throws IOException if the listener fails
+	 */
+	public void record(long now, int bytes) throws IOException {
+		advance(now);
+		ring[slot(bucket)] += bytes;
+		for (int w = 0; w < windows.length; w++) {
+			slidingSum[w] += bytes;
+			tumbleBytes[w] += bytes;
+		}
+	}
+
+	/**
+	 * Closes the tumbling windows that ended before <code>now</code> and moves the sliding windows to
+	 * <code>now</code>. Called by record(), and useful to get the windows closed when no packets arrive.
+	 *
+	 * @param now the current time in milliseconds
+	 * @throws IOException if the listener fails
+	 */
+	public void advance(long now) throws IOException {
+		long target = Math.floorDiv(now, bucketMillis);
+		if (target - bucket >= ring.length) {  // idle for longer than every window, start over
+			java.util.Arrays.fill(ring, 0);
+			java.util.Arrays.fill(slidingSum, 0);
+			bucket = target;
+		}
+		while (bucket < target) {
+			bucket++;
+			for (int w = 0; w < windows.length; w++) {
+				slidingSum[w] -= ring[slot(bucket - windowBuckets[w])];  // the bucket leaving the window
+			}
+			ring[slot(bucket)] = 0;
+		}
+		lastTime = Math.max(lastTime, now);
+
+		// the sliding windows are already up to date, so the listener may read them
+		for (int w = 0; w < windows.length; w++) {
+			while (now >= tumbleEnd[w]) {
+				long rate = tumbleBytes[w] * 8 * 1000 / windows[w];
+				tumbleBytes[w] = 0;
+				tumbleEnd[w] += windows[w];
+				if (listener != null) {
+					listener.windowClosed(this, w, rate);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the throughput over the last window length up to the latest time given to record() or advance().
+	 * Before a full window has passed since the start, the throughput is averaged over the time passed.
+	 *
+	 * @param window the index of the window length
+	 * @return the throughput in bits per second
+	 */
+	public long slidingRate(int window) {
+		long span = Math.min(windows[window], Math.max(lastTime - startTime, bucketMillis));
+		return slidingSum[window] * 8 * 1000 / span;
+	}
+
+	private int slot(long b) {
+		return (int) Math.floorMod(b, (long) ring.length);
+	}
+
+	/**
+	 * @return the number of window lengths
+	 */
+	public int windowCount() {
+		return windows.length;
+	}
+
+	/**
+	 * @param window the index of the window length
+	 * @return the window length in milliseconds
+	 */
+	public long windowLength(int window) {
+		return windows[window];
+	}
+}
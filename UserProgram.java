@@ -0,0 +1,1609 @@
+
+package ithaki;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import javax.sound.sampled.*;
+import java.util.Arrays;
+import java.util.Properties;
+
+
+/**
+ * A class that provides methods for working with various types of data and telemetry in a drone or vehicle system.
+ * This class includes methods for processing echo signals, images, sound, vehicle telemetry, and more.
+ *
+ * <ul>
+ *   <li><code>echo(boolean, String)</code>: This method sends an echo signal to a specified port using UDP protocol.</li>
+ *   <li><code>echoPipelined(boolean, String, int[], long)</code>: This method keeps several echo requests in flight
+ *   	and measures the throughput of the path for every window size, with the rtt of marker requests.</li>
+ *   <li><code>image(boolean, int, String, String, String)</code>: This method generates an image using specified
+ *   	parameters and saves it to a file on the local machine. The image is created by sending UDP packets to a specified port.</li>
+ *   <li><code>imageWindowed(int, String, String, String)</code>: This method receives an image with the flow mechanism,
+ *   	keeping a window of NEXT tokens outstanding.</li>
+ *   <li><code>flowBenchmark(String, String, String, int[])</code>: This method compares the download time of an image
+ *   	with one NEXT at a time and with a window of NEXT tokens, for several packet sizes.</li>
+ *   <li><code>tuneImageSize(String, String, String, int[], int)</code>: This method probes several packet sizes for a
+ *   	camera and keeps the one that downloads images fastest.</li>
+ *   <li><code>soundDPCM(int, String, String, String)</code>: This method generates a sound signal using differential
+ *   	pulse-code modulation (DPCM) and saves it to a file on the local machine.</li>
+ *   <li><code>soundAQDPCM(int, String, String)</code>: This method generates a sound signal using adaptive quantization
+ *   	differential pulse-code modulation (AQ-DPCM) and saves it to a file on the local machine.</li>
+ *   <li><code>copterTelemetryUDP(String)</code>: This method simulates a telemetry feed from a remote control
+ *   	helicopter by sending UDP packets to a specified port.</li>
+ *   <li><code>vehicleOBDII(int, String)</code>: This method simulates data output from a vehicle's on-board diagnostics
+ *   	(OBD-II) system and sends the data to a specified port using TCP protocol.</li>
+ *   <li><code>vehicleOBDIIScheduled(String, int)</code>: This method polls all the OBD-II values at once on one TCP
+ *   	connection, each at its own rate, and saves them with timestamps to Sched_ files.</li>
+ *   <li><code>video(boolean, int, String, String)</code>: This method generates a video using specified parameters and
+ *   	saves it to a file on the local machine. The video is created by converting a series of images to a video format using FFmpeg.</li>
+ *   <li><code>copterTCPtest(String)</code>: This method tests the TCP connection to a remote control helicopter by
+ *  	 sending a test message to a specified port.</li>
+ * </ul>
+ * Every UDP method also has a version that takes an <code>IthakiSession</code> as first argument, so several
+ * methods can share one connection with the server; the versions without a session open one for the call.
+ */
+public class UserProgram {
+	
+	 public static String serverhost=System.getProperty("ithaki.host", "155.207.18.208");  // -Dithaki.host=127.0.0.1 for IthakiSimulator
+	 public static int clientport=48019;
+	 public static int serverport=38019;
+	 public static int obdport=29078;
+	 public static int coptertcpport=38048;
+
+	/** The PIDs of the vehicleOBDII() choices 1 to 6: engine run time, intake air temperature, throttle position,
+	 * engine RPM, vehicle speed and coolant temperature. */
+	static final int[] OBD_PIDS = {0x1F, 0x0F, 0x11, 0x0C, 0x0D, 0x05};
+	/** The files vehicleOBDII() saves the values of OBD_PIDS to; vehicleOBDIIScheduled() adds the prefix Sched_. */
+	static final String[] OBD_FILES = {"Engine_run_time.txt", "Intake_air_temperature.txt", "Throttle_position.txt",
+			"Engine_RPM.txt", "Vehicle_speed.txt", "Coolant_temperature.txt"};
+	/** The samples per second of OBD_PIDS when they are polled together, by how fast each one changes. */
+	static final double[] OBD_RATES = {1, 0.5, 5, 10, 5, 0.2};
+
+	/**
+	 * Sends 4 echo requests to the server and prints them.
+	 * Used at the start of almost each program. Opens a session for this call only; methods that share a session
+	 * use initiate(IthakiSession, String).
+	 *
+	 * @param echocode a String representing the code of the echo request
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void initiate(String echocode) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			initiate(session, echocode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Sends 4 echo requests to the server and prints them, the first time it is called on the session.
+	 * Used at the start of almost each program. Every time, it first throws away the packets of earlier methods
+	 * still waiting on the session.
+	 *
+	 * @param session the session with the server
+	 * @param echocode a String representing the code of the echo request
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void initiate(IthakiSession session, String echocode) throws IOException {
+		int stray = session.drain();  // the late packets of the previous method
+		if (stray > 0) {
+			System.out.println("Dropped " + stray + " late packets");
+		}
+		if (session.initiate() == false) {
+			return;  // the server was already woken up in this session
+		}
+		ByteBuffer request = directBuffer("echo_request_code=E" + echocode);
+		byte buffer[] = new byte[32];
+		ByteBuffer reply = ByteBuffer.wrap(buffer);
+		int count = 0;
+		while (count != 4) {  // send packet 4 times
+			long start = System.nanoTime();
+			session.send(request);  // sends the packet to the server
+			int length = session.receiveUntil(reply, session.deadline(start));  // receives the response packet, timeout is one rto
+			if (length >= 0) {
+				session.sampleRtt((System.nanoTime() - start) / 1e6);  // the echoes give the first rtt estimate
+				System.out.println(new String(buffer, 0, length));
+			}
+			count++;
+		}
+		System.out.println("End Packets, rto=" + session.rto() + "ms");
+		return;
+	}
+
+	/**
+	 * Sends and receives echo packets for 4 minutes, calculates throughput for 1, 8, 16, 32 and 128 seconds as well as rtt, srtt,
+	 * and rto and saves them to files. Rtt is measured in nanoseconds and summarized by a latency histogram, so the
+	 * memory used does not depend on the length of the run. Srtt, s and rto are updated with every sample by the
+	 * Jacobson estimator; the RFC 6298 and Eifel estimators run alongside and their rto is saved for comparison.
+	 * An echo request that is not answered within the rto of the session is sent again with the timeout doubled,
+	 * up to 3 times; the reply of a request that was sent more than once gives no rtt sample.
+	 * @param temp          whether to send packet for temperature
+	 * @param echocode      code to append to output file names
+	 * @throws IOException  if an I/O error occurs
+	 */
+	public static void echo(boolean temp, String echocode) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			echo(session, temp, echocode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as echo(boolean, String), on a session shared with other methods.
+	 *
+	 * @param session       the session with the server
+	 * @param temp          whether to send packet for temperature
+	 * @param echocode      code to append to output file names
+	 * @throws IOException  if an I/O error occurs
+	 */
+	public static void echo(IthakiSession session, boolean temp, String echocode) throws IOException {
+		session.drain();  // the late packets of the previous method
+
+		// Initialize files and the histogram (which summarizes rtt values)
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] windows = {1000, 8000, 16000, 32000, 128000};  // throughput window lengths in ms
+		ResultSink results = new ResultSink();  // files are written by a background thread, off the receive loop
+		try {
+			final ResultSink.Output[] th = new ResultSink.Output[windows.length];
+			for (int w = 0; w < windows.length; w++) {
+				th[w] = results.open("throutput" + windows[w] / 1000 + "_E" + echocode + ".txt");
+			}
+			final ResultSink.Output sliding = results.open("throutputSliding_E" + echocode + ".txt");
+			ResultSink.Output timesfile = results.open("timesfile" + echocode + ".txt");
+			ResultSink.Output dif = results.open("diffirencies" + echocode + ".txt");
+			ResultSink.Output Srtt = results.open("srtt" + echocode + ".txt");
+			ResultSink.Output S = results.open("s" + echocode + ".txt");
+			ResultSink.Output Rto = results.open("rto" + echocode + ".txt");
+			ResultSink.Output latency = results.open("latency" + echocode + ".txt");
+			ResultSink.Output compare = results.open("rtoCompare" + echocode + ".txt");  // rtt and the rto of every estimator
+
+			int bytesize = 0;
+			ByteBuffer request;
+			if (temp == false) {
+				// send packet for echo
+				request = directBuffer("echo_request_code=E" + echocode);
+				bytesize = 32;
+			} else {
+				// send packet for temperature
+				request = directBuffer("echo_request_codeT00=E" + echocode);
+				bytesize = 54;
+			}
+
+			long startTime = System.currentTimeMillis();  // initialize variables
+			long start;
+			long end;
+			long endTime = startTime + (240000);
+			long timeouts = session.timeouts();
+			byte buffer[] = new byte[bytesize];
+			ByteBuffer reply = ByteBuffer.wrap(buffer);
+			ByteBuffer stray = ByteBuffer.allocate(bytesize);  // late answers to retransmitted requests
+			RetransmitTimer timer = session.retransmitTimer(3);
+
+			// the tumbling throughput of every window is saved to its own file when the window closes. Every time the
+			// shortest window closes, the sliding throughput of all windows is saved as one line.
+			ThroughputMeter.Listener saveThroughput = new ThroughputMeter.Listener() {
+				@Override
+				public void windowClosed(ThroughputMeter meter, int window, long bitsPerSecond) throws IOException {
+					th[window].write(bitsPerSecond);
+					if (window == 0) {
+						StringBuilder line = new StringBuilder();
+						for (int w = 0; w < meter.windowCount(); w++) {
+							line.append(w == 0 ? "" : " ").append(meter.slidingRate(w));
+						}
+						sliding.write(line.toString());
+					}
+				}
+			};
+			ThroughputMeter meter = new ThroughputMeter(100, windows, saveThroughput, System.nanoTime() / 1000000);
+
+			// srtt, s and rto are updated with every rtt sample. The jacobson estimator gives the values saved in the
+			// srtt, s and rto files, the others run on the same samples so their rto can be compared.
+			RttEstimator jacobson = new RttEstimator.Jacobson(0.9, 0.75, 4);
+			RttEstimator[] estimators = {jacobson, new RttEstimator.Rfc6298(), new RttEstimator.Eifel()};
+
+			while (System.currentTimeMillis() < endTime) {  // loop for 4 minutes
+				// send packet
+				start = System.nanoTime();
+				session.send(request);
+				timer.start(start);
+
+				// receive echo packet, waiting one rto of the session. If it does not come the request is sent again
+				// with a doubled timeout, a few times before giving up on it
+				int length;
+				while ((length = session.receiveUntil(reply, timer.deadline())) < 0 && timer.retransmit(System.nanoTime())) {
+					session.send(request);
+				}
+				if (length >= 0) {
+					end = System.nanoTime();
+					timer.acknowledged(end, true);  // updates the rto of the session, unless the request was sent again
+
+					// count the received bytes in every throughput window
+					meter.record(System.nanoTime() / 1000000, length);
+
+					// the reply of a request sent more than once may belong to any copy, so it gives no rtt (Karn's
+					// rule). An answer to an earlier copy that is already here is thrown away, so it is not taken for
+					// the reply of the next request
+					if (timer.isRetransmitted()) {
+						while (session.receiver().poll(stray) >= 0) {
+						}
+					} else {
+						// add rtt to the histogram and write it to file in milliseconds
+						histogram.record(end - start);
+						double rtt = (end - start) / 1e6;
+						dif.write(rtt);
+
+						// update the estimators with the new sample
+						StringBuilder line = new StringBuilder().append(rtt);
+						for (int i = 0; i < estimators.length; i++) {
+							estimators[i].sample(rtt);
+							line.append(' ').append(estimators[i].getRto());
+						}
+						compare.write(line.toString());
+						Srtt.write(jacobson.getSrtt());
+						S.write(jacobson.getRttvar());
+						Rto.write(jacobson.getRto());
+					}
+
+					timesfile.write(buffer, 0, length, "\n");  // write value of echo packets to file
+
+					System.out.println(new String(buffer, 0, length));
+				}
+			}
+
+			// save the rtt percentiles, the number of waits that timed out and the number of requests sent again
+			timeouts = session.timeouts() - timeouts;
+			String summary = histogram.summary() + " timeouts=" + timeouts + " retransmissions=" + timer.retransmissions();
+			latency.write(summary);
+			System.out.println(summary);
+		} finally {
+			results.close();  // close files
+		}
+
+		System.out.print("End");
+		return;
+	}
+
+	/**
+	 * Sends echo packets with up to <code>window</code> requests in flight at the same time, for every window size
+	 * given, and saves the achieved throughput and the mean rtt of each window size to a file.
+	 * The server does not echo anything that identifies the request, so after a lost reply the order of the replies
+	 * says nothing about which request each one answers. The rtt is therefore measured on markers: every fourth
+	 * request is the other kind of echo (with or without temperature), whose reply has another length, and only
+	 * one marker is in flight at a time. A marker given up for longer than any rtt of the run was lost; the plain
+	 * requests sent well before a marker that was answered were lost too, and their slots are reused. Any request
+	 * that gets no reply within one rto of the session is given up as well.
+	 * The loss is the requests sent minus the replies received, counted after the last replies are drained.
+	 * The results are saved to window_E[echocode].txt as lines of: window, throughput in bits per second of all
+	 * the replies, markers included, mean rtt of the markers in milliseconds, replies, lost requests. The rtt is
+	 * that of the other kind of echo, which for the temperature reply includes the time the server reads it.
+	 *
+	 * @param temp          whether to send packet for temperature
+	 * @param echocode      code to append to output file names
+	 * @param windows       the window sizes (requests in flight) to measure
+	 * @param duration      how long to run each window size, in milliseconds
+	 * @throws IOException  if an I/O error occurs
+	 */
+	public static void echoPipelined(boolean temp, String echocode, int[] windows, long duration) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			echoPipelined(session, temp, echocode, windows, duration);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as echoPipelined(boolean, String, int[], long), on a session shared with other methods.
+	 *
+	 * @param session       the session with the server
+	 * @param temp          whether to send packet for temperature
+	 * @param echocode      code to append to output file names
+	 * @param windows       the window sizes (requests in flight) to measure
+	 * @param duration      how long to run each window size, in milliseconds
+	 * @throws IOException  if an I/O error occurs
+	 */
+	public static void echoPipelined(IthakiSession session, boolean temp, String echocode, int[] windows, long duration) throws IOException {
+		session.drain();  // the late packets of the previous method
+		FileWriter sweep = new FileWriter("window_E" + echocode + ".txt");
+
+		try {
+			// a marker is the other kind of echo, whose reply has another length, so its rtt is measured for sure
+			ByteBuffer request;
+			ByteBuffer marker;
+			int markerSize;
+			if (temp == false) {
+				request = directBuffer("echo_request_code=E" + echocode);
+				marker = directBuffer("echo_request_codeT00=E" + echocode);
+				markerSize = 54;
+			} else {
+				request = directBuffer("echo_request_codeT00=E" + echocode);
+				marker = directBuffer("echo_request_code=E" + echocode);
+				markerSize = 32;
+			}
+			ByteBuffer reply = ByteBuffer.allocateDirect(54);
+
+			for (int w = 0; w < windows.length; w++) {
+				int window = windows[w];
+				long[] sent = new long[window];  // send timestamps of the plain requests in flight, oldest first
+				int plain = 0;
+				long markerSent = -1;  // send timestamp of the marker in flight, -1 if none
+				int sinceMarker = 0;
+				long requests = 0;
+				long replies = 0;
+				long bytes = 0;
+				long rttSum = 0;  // ns, over the marker replies
+				long rttCount = 0;
+				double srtt = 0;  // ns, of the markers, 0 until the first one
+				double rttvar = 0;
+
+				long startTime = System.nanoTime();
+				long endTime = startTime + duration * 1000000;
+				long now = startTime;
+				while (now < endTime) {
+					while (plain + (markerSent < 0 ? 0 : 1) < window) {  // fill the window, with a marker every 4
+						long time = System.nanoTime();
+						if (markerSent < 0 && sinceMarker >= 3) {
+							markerSent = time;
+							session.send(marker);
+							sinceMarker = 0;
+						} else {
+							sent[plain++] = time;
+							session.send(request);
+							sinceMarker++;
+						}
+						requests++;
+					}
+
+					// wait no longer than one rto after the oldest request was sent
+					long oldest = plain == 0 ? markerSent : markerSent < 0 ? sent[0] : Math.min(sent[0], markerSent);
+					int length = session.receiveUntil(reply, session.deadline(oldest));
+					now = System.nanoTime();
+					long margin = srtt == 0 ? Long.MAX_VALUE : (long) (4 * rttvar);
+					if (length < 0) {  // the oldest request is given up
+						if (oldest == markerSent) {
+							markerSent = -1;
+						} else {
+							plain = remove(sent, plain, 1);
+						}
+						continue;
+					}
+					replies++;
+					bytes += length;
+
+					if (length != markerSize) {
+						// a plain reply: the requests come back in order, so the oldest plain one is answered. With
+						// the marker in flight for longer than any rtt of the run, the marker was lost
+						if (plain > 0) {
+							plain = remove(sent, plain, 1);
+						}
+						if (markerSent >= 0 && srtt > 0 && now - markerSent > srtt + margin) {
+							markerSent = -1;
+						}
+						continue;
+					}
+
+					// the only marker in flight is answered, unless it was sent too recently for this to be its reply
+					long rtt = now - markerSent;
+					if (markerSent < 0 || (srtt > 0 && rtt < srtt - margin)) {
+						continue;  // the late reply of a marker already given up
+					}
+					markerSent = -1;
+					if (srtt == 0) {
+						srtt = rtt;
+						rttvar = rtt / 2.0;
+					} else {
+						rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rtt);
+						srtt = 0.875 * srtt + 0.125 * rtt;
+					}
+					rttSum += rtt;
+					rttCount++;
+
+					// the plain requests sent well before the marker would have been answered before it: they were lost
+					int given = 0;
+					while (given < plain && sent[given] < now - rtt - 4 * rttvar) {
+						given++;
+					}
+					plain = remove(sent, plain, given);
+				}
+				long elapsed = now - startTime;
+
+				// count the replies still on their way, so they are not matched to the next window size
+				while (session.receiveUntil(reply, session.deadline()) >= 0) {
+					replies++;
+				}
+
+				long lost = requests - replies;
+				long throughput = (long) (bytes * 8 / (Math.max(elapsed, 1) / 1e9));
+				double markerRtt = rttCount == 0 ? Double.NaN : rttSum / 1e6 / rttCount;
+				sweep.write(window + " " + throughput + " " + markerRtt + " " + replies + " " + lost);
+				sweep.write("\n");
+				System.out.println("window=" + window + " throughput=" + throughput + "bps (markers included) marker rtt="
+						+ markerRtt + "ms lost=" + lost);
+			}
+		} finally {
+			sweep.close();
+		}
+
+		System.out.print("End");
+		return;
+	}
+
+	/**
+	 * Removes the oldest requests from the requests in flight of echoPipelined().
+	 *
+	 * @return the number of requests left in flight
+	 */
+	private static int remove(long[] sent, int inFlight, int count) {
+		System.arraycopy(sent, count, sent, 0, inFlight - count);
+		return inFlight - count;
+	}
+
+	/**
+	 * Receives an image from the server in packets of size L, from camera cam, and optionally uses a flow mechanism.
+	 *
+	 * @param flow A boolean indicating whether or not to use the flow mechanism.
+	 * @param L The packet size.
+	 * @param cam The camera to receive the image from.
+	 * @param imagecode A string identifier for the image.
+	 * @param echocode A string identifier for the client.
+	 * @throws IOException If there is an I/O error.
+	 */
+	public static void image(boolean flow, int L, String cam, String imagecode, String echocode) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			image(session, flow, L, cam, imagecode, echocode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as image(boolean, int, String, String, String), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param flow A boolean indicating whether or not to use the flow mechanism.
+	 * @param L The packet size.
+	 * @param cam The camera to receive the image from.
+	 * @param imagecode A string identifier for the image.
+	 * @param echocode A string identifier for the client.
+	 * @throws IOException If there is an I/O error.
+	 */
+	public static void image(IthakiSession session, boolean flow, int L, String cam, String imagecode, String echocode) throws IOException {
+		initiate(session, echocode); // initialize the client with echocode
+
+		JpegFrameAssembler frame = new JpegFrameAssembler(L);
+		downloadImage(session, "image" + imagecode + ".jpg", flow, false, L, cam, imagecode, frame, 0);
+		if (frame.damaged()) {
+			System.out.println("image" + imagecode + ".jpg is damaged: " + frame.skipped() + " fragments skipped");
+		}
+
+		System.out.print("End");
+		return;
+	}
+
+	/**
+	 * Receives an image from the server with the flow mechanism on, keeping a window of NEXT tokens outstanding
+	 * instead of sending one and waiting for its fragment. The window follows the bandwidth-delay product of the
+	 * path, as measured by CreditWindow. A token left unanswered for one rto counts as a skipped fragment; a loss
+	 * in the last rto before the image ends is not noticed, so the image can be damaged with no fragment skipped.
+	 *
+	 * @param L The packet size.
+	 * @param cam The camera to receive the image from.
+	 * @param imagecode A string identifier for the image.
+	 * @param echocode A string identifier for the client.
+	 * @throws IOException If there is an I/O error.
+	 */
+	public static void imageWindowed(int L, String cam, String imagecode, String echocode) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			imageWindowed(session, L, cam, imagecode, echocode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as imageWindowed(int, String, String, String), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param L The packet size.
+	 * @param cam The camera to receive the image from.
+	 * @param imagecode A string identifier for the image.
+	 * @param echocode A string identifier for the client.
+	 * @throws IOException If there is an I/O error.
+	 */
+	public static void imageWindowed(IthakiSession session, int L, String cam, String imagecode, String echocode) throws IOException {
+		initiate(session, echocode);
+
+		JpegFrameAssembler frame = new JpegFrameAssembler(L);
+		downloadImage(session, "image" + imagecode + ".jpg", true, true, L, cam, imagecode, frame, 0);
+		if (frame.damaged()) {
+			System.out.println("image" + imagecode + ".jpg is damaged: " + frame.skipped() + " fragments skipped");
+		}
+
+		System.out.print("End");
+		return;
+	}
+
+	/**
+	 * Downloads the same image with the flow mechanism, once waiting for each fragment before the next NEXT and
+	 * once with a window of NEXT tokens, for every packet size given, and saves the download times to
+	 * flowBenchmark[imagecode].txt as lines of: L, stop-and-wait time (ms), windowed time (ms), fragments skipped
+	 * stop-and-wait, fragments skipped windowed. A time with skipped fragments is for a damaged image. The windowed
+	 * count misses the losses of the last rto before the image ends (see imageWindowed), and both counts include
+	 * lost NEXT tokens, which leave no hole.
+	 *
+	 * @param cam The camera to receive the images from.
+	 * @param imagecode A string identifier for the image.
+	 * @param echocode A string identifier for the client.
+	 * @param sizes The packet sizes to compare.
+	 * @throws IOException If there is an I/O error.
+	 */
+	public static void flowBenchmark(String cam, String imagecode, String echocode, int[] sizes) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			flowBenchmark(session, cam, imagecode, echocode, sizes);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as flowBenchmark(String, String, String, int[]), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param cam The camera to receive the images from.
+	 * @param imagecode A string identifier for the image.
+	 * @param echocode A string identifier for the client.
+	 * @param sizes The packet sizes to compare.
+	 * @throws IOException If there is an I/O error.
+	 */
+	public static void flowBenchmark(IthakiSession session, String cam, String imagecode, String echocode, int[] sizes) throws IOException {
+		initiate(session, echocode);
+
+		FileWriter results = new FileWriter("flowBenchmark" + imagecode + ".txt");
+
+		try {
+			for (int k = 0; k < sizes.length; k++) {
+				int L = sizes[k];
+				JpegFrameAssembler frame = new JpegFrameAssembler(L);
+				long stopAndWait = downloadImage(session, "flowS" + L + ".jpg", true, false, L, cam, imagecode, frame, 0);
+				int stopAndWaitSkipped = frame.skipped();
+				long windowed = downloadImage(session, "flowW" + L + ".jpg", true, true, L, cam, imagecode, frame, 0);
+				int windowedSkipped = frame.skipped();
+				results.write(L + " " + stopAndWait / 1e6 + " " + windowed / 1e6 + " " + stopAndWaitSkipped + " " + windowedSkipped);
+				results.write("\n");
+				System.out.println("L=" + L + " stop-and-wait=" + stopAndWait / 1e6 + "ms windowed=" + windowed / 1e6 + "ms"
+						+ " skipped=" + stopAndWaitSkipped + "/" + windowedSkipped);
+			}
+		} finally {
+			results.close();
+		}
+
+		System.out.print("End");
+		return;
+	}
+
+	/**
+	 * Requests one image and writes its fragments to a file until the frame is complete.
+	 *
+	 * @param session the session with the server
+	 * @param filename the file to save the image to
+	 * @param flow whether to use the flow mechanism
+	 * @param windowed with the flow mechanism, whether to keep a window of NEXT tokens outstanding
+	 * @param L The packet size.
+	 * @param cam The camera to receive the image from.
+	 * @param imagecode A string identifier for the image.
+	 * @param frame the assembler for packets of size L, left holding the statistics of the image
+	 * @param timeout how long to wait for a fragment after the first in milliseconds, 0 to wait one rto of the
+	 *        session; the first fragment always gets 4 seconds, since the picture is taken first. A timeout ends
+	 *        the image, except with the flow mechanism and a timeout of 0, where NEXT is sent again
+	 * @return the download time in nanoseconds
+	 * @throws IOException If there is an I/O error.
+	 */
+	private static long downloadImage(IthakiSession session, String filename, boolean flow,
+			boolean windowed, int L, String cam, String imagecode, JpegFrameAssembler frame, long timeout) throws IOException {
+		// Create a file to write the image to, and one direct buffer that is reused for every packet.
+		FileOutputStream image = new FileOutputStream(filename);
+		ByteBuffer fragment = ByteBuffer.allocateDirect(L);
+		frame.start(image.getChannel());
+		CreditWindow credits = new CreditWindow(session.receiver().channel().getOption(StandardSocketOptions.SO_RCVBUF) / L);
+		RetransmitTimer timer = session.retransmitTimer(3);
+
+		ByteBuffer request = null;
+		ByteBuffer next = directBuffer("NEXT");
+
+		if (flow == false) {
+			// If the flow mechanism is not used, create a packet with the user's preferences.
+			request = directBuffer("image_request_code=M" + imagecode + "CAM=" + cam + "UDP=" + L);
+		} else {
+			// If the flow mechanism is used, create a packet with the user's preferences and turn on the flow mechanism.
+			request = directBuffer("image_request_code=M" + imagecode + "FLOW=ONCAM=" + cam + "UDP=" + L);
+		}
+
+		// Send the packet to the server.
+		long start = System.nanoTime();
+		session.send(request);
+
+		while (!frame.isComplete()) {
+			// Receive sequential response packets from the server and write them to the image file until the end of
+			// image marker or a packet of size not equal to L is received.
+			if (flow == true && windowed == false) {
+				// If the flow mechanism is used, send a packet with the word NEXT to the server.
+				session.send(next);
+			} else if (flow == true) {
+				// Top up the window of NEXT tokens.
+				for (int n = credits.toSend(); n > 0; n--) {
+					session.send(next);
+					credits.sent(System.nanoTime());
+				}
+			}
+
+			if (flow == true && timeout == 0) {
+				// After a lost NEXT token or fragment NEXT is sent again, and the frame counts a skipped fragment.
+				// In the window every outstanding token went unanswered, so each counts as a skipped fragment, and
+				// the tokens are forgotten. While the fragments keep coming, a token older than one rto has lost its
+				// fragment to the later ones, so it is forgotten and counted as well.
+				timer.start(System.nanoTime());
+				if (receiveFlowFragment(session, fragment, next, frame, timer, windowed == false) >= 0) {
+					long now = System.nanoTime();
+					if (timer.isRetransmitted()) {
+						frame.skip(Math.max(0, credits.outstanding() - 1));
+						credits.reset();
+					} else {
+						credits.received(now);
+						frame.skip(credits.expire(now - (long) (session.rto() * 1e6)));
+					}
+				}
+			} else {
+				long deadline = timeout == 0 || frame.fragments() == 0 ? fragmentDeadline(session, frame)
+						: System.nanoTime() + timeout * 1000000;
+				if (session.receiveUntil(fragment, deadline) >= 0) {
+					credits.received(System.nanoTime());
+				}
+			}
+			frame.append(fragment);
+		}
+		long elapsed = System.nanoTime() - start;
+
+		// Close the image file.
+		image.close();
+		return elapsed;
+	}
+
+	/**
+	 * Waits for the next fragment of a FLOW=ON image, after NEXT was sent and the timer started. If the deadline
+	 * passes, the token or the fragment it released was lost, so NEXT is sent again with the timeout doubled, up
+	 * to the retries of the timer. The server answers every NEXT with the following fragment, so a fragment that
+	 * arrives after a retransmission is counted as a skipped one on the frame: the two losses cannot be told
+	 * apart, and the frame has a hole unless only the token was lost. The first fragment also waits for the
+	 * picture to be taken, so it is never an rtt sample.
+	 *
+	 * @param session the session with the server
+	 * @param fragment the buffer to receive into
+	 * @param next the NEXT token
+	 * @param frame the frame being received
+	 * @param timer the timer started when NEXT was sent
+	 * @param sample whether the time from the token to the fragment is an rtt; false when other tokens are
+	 *        outstanding ahead of it
+	 * @return the length of the fragment, or -1 if it did not arrive
+	 * @throws IOException If there is an I/O error.
+	 */
+	private static int receiveFlowFragment(IthakiSession session, ByteBuffer fragment, ByteBuffer next,
+			JpegFrameAssembler frame, RetransmitTimer timer, boolean sample) throws IOException {
+		int length;
+		while ((length = session.receiveUntil(fragment, Math.max(timer.deadline(), fragmentDeadline(session, frame)))) < 0
+				&& timer.retransmit(System.nanoTime())) {
+			session.send(next);
+		}
+		if (length >= 0) {
+			timer.acknowledged(System.nanoTime(), sample && frame.fragments() > 0);
+			if (timer.isRetransmitted()) {
+				frame.skip(1);  // the server moved on to the next fragment, the lost one is not coming
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Returns how long to wait for the next fragment of an image: one rto of the session, but 4 seconds for the
+	 * first fragment, since the server has to take the picture before it sends it.
+	 *
+	 * @param session the session with the server
+	 * @param frame the frame being received
+	 * @return the deadline as a System.nanoTime() value
+	 */
+	private static long fragmentDeadline(IthakiSession session, JpegFrameAssembler frame) {
+		if (frame.fragments() == 0) {
+			return System.nanoTime() + 4000000000L;
+		}
+		return session.deadline();
+	}
+
+	/**
+	 * Finds the packet size that downloads images from camera cam fastest. Every size is probed with a few short
+	 * downloads without the flow mechanism. The first fragment of a probe may take the 4 seconds the camera needs,
+	 * later ones 1 second; a probe whose image does not end with the end of image marker (a fragment was lost and
+	 * the receive timed out) counts as failed. Without the flow mechanism the fragments lost cannot be counted, so
+	 * the failed probes stand for the loss of a size. The score of a size is its bytes per second times the
+	 * fraction of probes that succeeded. The results are saved to tune[cam].txt as lines of: L, bytes per second,
+	 * failed probes, score, and the best size is kept in imageSizes.properties, so later captures can get it with
+	 * bestImageSize().
+	 *
+	 * @param cam The camera to tune (FIX or PTZ).
+	 * @param imagecode A string identifier for the image.
+	 * @param echocode A string identifier for the client.
+	 * @param sizes The packet sizes to probe.
+	 * @param probes The number of downloads for each size.
+	 * @return the best packet size
+	 * @throws IOException If there is an I/O error.
+	 */
+	public static int tuneImageSize(String cam, String imagecode, String echocode, int[] sizes, int probes) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			return tuneImageSize(session, cam, imagecode, echocode, sizes, probes);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as tuneImageSize(String, String, String, int[], int), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param cam The camera to tune (FIX or PTZ).
+	 * @param imagecode A string identifier for the image.
+	 * @param echocode A string identifier for the client.
+	 * @param sizes The packet sizes to probe.
+	 * @param probes The number of downloads for each size.
+	 * @return the best packet size
+	 * @throws IOException If there is an I/O error.
+	 */
+	public static int tuneImageSize(IthakiSession session, String cam, String imagecode, String echocode, int[] sizes, int probes) throws IOException {
+		initiate(session, echocode);
+
+		FileWriter results = new FileWriter("tune" + cam + ".txt");
+		ByteBuffer stray = ByteBuffer.allocateDirect(2048);
+
+		int best = sizes[0];
+		double bestScore = -1;
+		try {
+			for (int k = 0; k < sizes.length; k++) {
+				int L = sizes[k];
+				JpegFrameAssembler frame = new JpegFrameAssembler(L);
+				long bytes = 0;
+				long time = 0;
+				int failed = 0;
+				for (int p = 0; p < probes; p++) {
+					time += downloadImage(session, "tune" + cam + ".jpg", false, false, L, cam, imagecode, frame, 1000);
+					bytes += frame.bytes();
+					if (!frame.hasEndMarker()) {
+						failed++;
+						while (session.receive(stray, 200) >= 0) {
+							// drop the late fragments of the failed probe
+						}
+					}
+				}
+
+				double rate = bytes * 1e9 / Math.max(time, 1);  // bytes per second
+				double score = rate * (probes - failed) / probes;
+				results.write(L + " " + rate + " " + failed + " " + score);
+				results.write("\n");
+				System.out.println("L=" + L + " " + (long) rate + "B/s failed probes=" + failed + "/" + probes);
+				if (score > bestScore) {
+					bestScore = score;
+					best = L;
+				}
+			}
+		} finally {
+			results.close();
+		}
+
+		// Keep the best size for the camera
+		Properties tuned = loadImageSizes();
+		tuned.setProperty(cam, String.valueOf(best));
+		FileOutputStream out = new FileOutputStream("imageSizes.properties");
+		tuned.store(out, "packet size (L) for each camera, chosen by tuneImageSize");
+		out.close();
+		System.out.println("Best L for " + cam + ": " + best);
+		return best;
+	}
+
+	/**
+	 * Returns the packet size chosen for camera cam by the last tuneImageSize() run.
+	 *
+	 * @param cam The camera (FIX or PTZ).
+	 * @param fallback The packet size to use if the camera was never tuned.
+	 * @return the packet size
+	 * @throws IOException If imageSizes.properties cannot be read.
+	 */
+	public static int bestImageSize(String cam, int fallback) throws IOException {
+		String size = loadImageSizes().getProperty(cam);
+		return size == null ? fallback : Integer.parseInt(size);
+	}
+
+	private static Properties loadImageSizes() throws IOException {
+		Properties tuned = new Properties();
+		File file = new File("imageSizes.properties");
+		if (file.exists()) {
+			FileInputStream in = new FileInputStream(file);
+			tuned.load(in);
+			in.close();
+		}
+		return tuned;
+	}
+
+	/**
+	 * Test application that sends a packet with the preferred direction to the PTZ camera so that it moves.
+	 *
+	 * @param direction: a string containing the direction in which the camera should move
+	 * @throws IOException: If an I/O error occurs
+	 */
+	public static void imageMove(String direction) throws IOException{
+		IthakiSession session = new IthakiSession();
+		try {
+			imageMove(session, direction);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as imageMove(String), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param direction: a string containing the direction in which the camera should move
+	 * @throws IOException: If an I/O error occurs
+	 */
+	public static void imageMove(IthakiSession session, String direction) throws IOException{
+
+		// create and send the packet containing the direction to the server
+		session.send(directBuffer("image_request_code=M2586CAM=PTZDIR=" + direction));
+	}
+
+
+	/**
+	 * Downloads images for 1 minute and saves them in sequential files so they can be turned into a video using ffmpeg library and command:
+	 * ffmpeg -start_number 1 -framerate 0.6 -i image%d.jpg -vcodec mpeg4 video.mp4
+	 * Each frame is requested once. The request for the next frame is sent as soon as the last fragment of the
+	 * current frame arrives, before the frame file is closed. With flow control on, one NEXT is sent per fragment.
+	 * The latency of every frame (from its request to its last fragment) is saved to videoStats[imagecode].txt,
+	 * with the fragments skipped after a NEXT retransmission, followed by the achieved frames per second.
+	 *
+	 * @param flow: a boolean that determines whether or not to use flow control
+	 * @param L: the size of the datagram packet
+	 * @param cam: the camera ID
+	 * @param imagecode: the image code for the request
+	 *
+	 * @throws IOException
+	 */
+	public static void video(boolean flow, int L, String cam, String imagecode) throws IOException{
+		IthakiSession session = new IthakiSession();
+		try {
+			video(session, flow, L, cam, imagecode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as video(boolean, int, String, String), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param flow: a boolean that determines whether or not to use flow control
+	 * @param L: the size of the datagram packet
+	 * @param cam: the camera ID
+	 * @param imagecode: the image code for the request
+	 * @throws IOException
+	 */
+	public static void video(IthakiSession session, boolean flow, int L, String cam, String imagecode) throws IOException{
+		session.drain();  // the late packets of the previous method
+
+		// Set up variables
+		int i=1;
+		ByteBuffer fragment = ByteBuffer.allocateDirect(L);  // reused for every packet
+		JpegFrameAssembler frame = new JpegFrameAssembler(L);
+		ResultSink results = new ResultSink();
+		try {
+			ResultSink.Output stats = results.open("videoStats" + imagecode + ".txt");
+			LatencyHistogram frameLatency = new LatencyHistogram();
+			long startTime2 = System.currentTimeMillis();
+			long endTime2 = startTime2+(60000);  //1min
+
+			// Create the requests once, based on whether flow control is on or off
+			ByteBuffer request;
+			if(flow==false) {
+				request=directBuffer("image_request_code=M"+ imagecode+ "CAM="+ cam +"UDP="+L);
+			}
+			else {
+				request=directBuffer("image_request_code=M"+ imagecode + "FLOW=ONCAM="+ cam +"UDP="+L);
+			}
+			ByteBuffer next=directBuffer("NEXT");
+			RetransmitTimer timer = session.retransmitTimer(3);
+
+			// Request the first frame
+			long requested = System.nanoTime();
+			session.send(request);
+
+			// Loop until 1 minute has passed
+			while(System.currentTimeMillis()<endTime2){
+				// Open file to write image to
+				FileOutputStream image = new FileOutputStream("image"+i+".jpg");
+				frame.start(image.getChannel());
+
+				while(!frame.isComplete()) {
+					// If flow control is on, send "NEXT" packet for every fragment, and again if it is lost
+					if(flow==true) {
+						session.send(next);
+						timer.start(System.nanoTime());
+						receiveFlowFragment(session, fragment, next, frame, timer, true);
+					}
+					else {
+						session.receiveUntil(fragment, fragmentDeadline(session, frame));
+					}
+
+					// The frame ends with the end of image marker or a packet smaller than L
+					frame.append(fragment);
+				}
+				long received = System.nanoTime();
+
+				// Request the next frame before anything else, so it is on its way while this one is saved
+				long latency = received - requested;
+				if(System.currentTimeMillis()<endTime2) {
+					requested = System.nanoTime();
+					session.send(request);
+				}
+
+				// Close file, save the frame latency and print end message
+				image.close();
+				frameLatency.record(latency);
+				stats.write(i + " " + frame.bytes() + " " + frame.fragments() + " " + latency / 1e6 + " " + frame.skipped());
+				System.out.println("End"+i);
+				i++;
+			}
+
+			// Save the achieved frame rate
+			double fps = (i - 1) * 1000.0 / (System.currentTimeMillis() - startTime2);
+			stats.write("fps=" + fps + " " + frameLatency.summary());
+			System.out.println("fps=" + fps + " " + frameLatency.summary());
+		} finally {
+			results.close();  // close files
+		}
+
+		return;
+	}
+
+	/**
+	 * Creates a direct buffer holding the bytes of a request, so it can be sent again with rewind() and no copy.
+	 *
+	 * @param request the request
+	 * @return the buffer, ready to be sent
+	 */
+	private static ByteBuffer directBuffer(String request) {
+		byte[] bytes = request.getBytes();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Plays a track from the server of the Ithaki Lab or from the frequency generator with DPCM coding
+	 * and saves it to file, as well as the differences and the samples. Every packet is decoded, played and
+	 * written to the file as soon as it arrives, so the track starts playing after the first packets and the
+	 * memory used does not depend on its length. A jitter buffer keeps the pace of the playback and conceals lost
+	 * packets; its counters are saved to playoutDPCM[code].txt.
+	 *
+	 * @param xxx: the number of packets to receive and decode.
+	 * @param audiocode: the code of the audio file to be played.
+	 * @param TorF: a flag indicating if the audio is to be played by the server or the frequency generator.
+	 * @param echocode: the echocode to be used.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void soundDPCM(int xxx, String audiocode, String TorF, String echocode) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			soundDPCM(session, xxx, audiocode, TorF, echocode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as soundDPCM(int, String, String, String), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param xxx: the number of packets to receive and decode.
+	 * @param audiocode: the code of the audio file to be played.
+	 * @param TorF: a flag indicating if the audio is to be played by the server or the frequency generator.
+	 * @param echocode: the echocode to be used.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void soundDPCM(IthakiSession session, int xxx, String audiocode, String TorF, String echocode) throws IOException {
+
+		// Initialize
+		initiate(session, echocode);
+
+		// Create files for differences and samples, the WAV file and the line that plays the track
+		ResultSink results = new ResultSink();
+		try {
+			ResultSink.Output Dif = results.open("difDPCM" + audiocode + ".txt");
+			ResultSink.Output sample = results.open("samplesDPCM" + audiocode + ".txt");
+			ResultSink.Output playout = results.open("playoutDPCM" + audiocode + ".txt");
+			AudioFormat linearPCM = new AudioFormat(8000, 8, 1, true, false);
+			WavWriter wav = new WavWriter(new File("DPCM" + audiocode + ".wav"), linearPCM);
+			SourceDataLine lineOut = openLine(linearPCM);
+
+			// One buffer of each stage, reused for every packet
+			byte[] buffer = new byte[128];
+			ByteBuffer packet = ByteBuffer.wrap(buffer);
+			int[] dif = new int[DpcmDecoder.SAMPLES_PER_PACKET];
+			byte[] data = new byte[DpcmDecoder.SAMPLES_PER_PACKET];
+			DpcmDecoder decoder = new DpcmDecoder();
+
+			// The decoded packets are played through a jitter buffer, which also conceals lost packets. They are saved
+			// as they are decoded, with a packet of silence for every packet lost
+			JitterBuffer jitter = new JitterBuffer(linearPCM, data.length, 64, lineOut);
+			byte[] silence = new byte[data.length];
+
+			// Every packet is decoded as soon as it arrives: receive, split into differences, add them up to samples
+			// and pass the samples to the jitter buffer
+			int written = 0;
+			int received = 0;
+			long seq = -1;
+			try {
+				// Create and send a packet to the server
+				session.send(directBuffer("sound_request_code=A" + audiocode + TorF + xxx));
+
+				while (received < xxx) {
+					// Receive a packet with length 128 bytes, waiting 4 seconds for the first one and then at most one rto.
+					// The jitter buffer numbers the packets as they arrive; once it infers a loss the numbers leave a gap
+					// that it conceals, and the next packet continues from the last sample received. A timeout after the
+					// last packet was due ends the track, and no receive waits past the time the buffer would run dry
+					// after the last packet
+					long deadline = received == 0 ? System.nanoTime() + 4000000000L
+							: Math.min(session.deadline(), jitter.due(xxx + jitter.targetFrames()));
+					if (session.receiveUntil(packet, deadline) < 0) {
+						if (received == 0 || System.nanoTime() > jitter.due(xxx - 1)) {
+							break;
+						}
+						continue;
+					}
+					long previous = seq;
+					seq = jitter.sequence(System.nanoTime());
+					received++;
+
+					decoder.differences(buffer, 0, dif);
+					decoder.reconstruct(dif, data);
+					jitter.put(seq, data, 0);
+					for (long n = seq - previous - 1; n > 0; n--) {
+						wav.write(silence, 0, silence.length);
+					}
+					wav.write(data, 0, data.length);
+
+					for (int d = 0; d < dif.length; d++) {  // write differences to file
+						Dif.write(dif[d]);
+					}
+					for (int d = 0; d < data.length && written < 2000; d++, written++) {  // and the first 2000 samples
+						sample.write(data[d]);
+					}
+				}
+
+				// The packets lost at the end of the track are saved as silence too
+				for (long n = received == 0 ? 0 : xxx - 1 - seq; n > 0; n--) {  // none if the packets were misnumbered
+					wav.write(silence, 0, silence.length);
+				}
+			} finally {
+				// Let the jitter buffer and the line play what they still hold and close everything
+				try {
+					jitter.close();
+					if (lineOut != null) {
+						lineOut.drain();
+						lineOut.close();
+					}
+				} finally {
+					wav.close();
+				}
+			}
+
+			System.out.println("Lost packets: " + (xxx - received) + " " + jitter.summary());
+			playout.write("lost=" + (xxx - received) + " " + jitter.summary());
+		} finally {
+			results.close();
+		}
+
+		System.out.print("End");
+		return;
+	}
+
+	/**
+	 * Opens and starts a line to play samples of the given format.
+	 *
+	 * @param format the format of the samples
+	 * @return the line, or null if there is no audio device
+	 */
+	private static SourceDataLine openLine(AudioFormat format) {
+		try {
+			SourceDataLine line = AudioSystem.getSourceDataLine(format);
+			line.open(format, 32000);
+			line.start();
+			return line;
+		} catch (Exception x) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Plays audio from ithaki using AQDPCM coding, saves it as well as samples,
+	 * differences, mean, and step. The packets are played as they arrive, through a jitter buffer that conceals
+	 * lost packets; its counters are saved to playoutAQDPCM[code].txt. Receives the audio code, echoes code, and the
+	 * number of packets to receive. The difference, mean, and step are used to decode
+	 * the audio signal, and the result is saved to text files. Every packet is decoded into one reused PCM buffer
+	 * and appended to the WAV file as it is decoded, so the memory used does not depend on the number of packets.
+	 * A lost packet is saved as a packet of silence.
+	 *
+	 * @param numOfPackets The number of packets to receive
+	 * @param audioCode The audio code to send to the server
+	 * @param echoCode The echo code to send to the server
+	 *
+	 * @throws IOException If an I/O error occurs
+	 */
+    public static void soundAQDPCM(int xxx, String audiocode, String echocode) throws IOException{ //play audio from ithaki using AQDPCM coding, 
+		IthakiSession session = new IthakiSession();
+		try {
+			soundAQDPCM(session, xxx, audiocode, echocode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as soundAQDPCM(int, String, String), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param numOfPackets The number of packets to receive
+	 * @param audioCode The audio code to send to the server
+	 * @param echoCode The echo code to send to the server
+	 * @throws IOException If an I/O error occurs
+	 */
+    public static void soundAQDPCM(IthakiSession session, int xxx, String audiocode, String echocode) throws IOException{ //play audio from ithaki using AQDPCM coding, 
+    																			//save it as well as samples,diffirences, mean and step
+		initiate(session, echocode);
+
+		// Create files for the first 2000 samples and differences and the first 300 means and steps
+		ResultSink results = new ResultSink();
+		try {
+			ResultSink.Output Dif = results.open("difAQDPCM" + audiocode + ".txt");
+			ResultSink.Output Sample = results.open("samplesAQDPCM" + audiocode + ".txt");
+			ResultSink.Output Mean = results.open("mean" + audiocode + ".txt");
+			ResultSink.Output Step = results.open("step" + audiocode + ".txt");
+			ResultSink.Output Playout = results.open("playoutAQDPCM" + audiocode + ".txt");
+
+			// The packets are played live through a jitter buffer and saved to the WAV file as they are decoded, with a
+			// packet of silence for every packet lost
+			AudioFormat linearPCM = new AudioFormat(8000, 16, 1, true, false);
+			SourceDataLine lineOut = openLine(linearPCM);
+			WavWriter wav = new WavWriter(new File("AQDPCM" + audiocode + ".wav"), linearPCM);
+			int numOfSamplesPerPack = 2 * 128;
+			JitterBuffer jitter = new JitterBuffer(linearPCM, 2 * numOfSamplesPerPack, 64, lineOut);
+
+			// A packet holds the mean and the step in 4 bytes and 256 differences in 128 bytes. The samples of a packet
+			// are written into one reused PCM buffer, 2 little endian bytes per sample
+			byte[] buffer = new byte[132];
+			ByteBuffer datareceived = ByteBuffer.wrap(buffer);
+			int[] dif = new int[numOfSamplesPerPack];
+			int[] packSample = new int[numOfSamplesPerPack];
+			byte[] audioBufferOut = new byte[2 * numOfSamplesPerPack];
+			byte[] silence = new byte[2 * numOfSamplesPerPack];
+			int packets = 0;
+			int previous = 0;  // the last sample of the previous packet
+
+			try {
+				session.send(directBuffer("sound_request_code=A" + audiocode + "AQF" + xxx)); // create and send packet
+				long seq = -1;  // the packets are numbered by the jitter buffer, as in soundDPCM
+				while (packets < xxx) {  // loop until the last requested packet
+					// receive audio packet. timeout: 4 seconds for the first one, then one rto; a timeout after the last
+					// packet was due ends the track
+					long deadline = packets == 0 ? System.nanoTime() + 4000000000L
+							: Math.min(session.deadline(), jitter.due(xxx + jitter.targetFrames()));
+					if (session.receiveUntil(datareceived, deadline) < 0) {
+						if (packets == 0 || System.nanoTime() > jitter.due(xxx - 1)) {
+							break;
+						}
+						continue;
+					}
+					long before = seq;
+					seq = jitter.sequence(System.nanoTime());
+
+					// mean and step from the first 4 bytes of the packet, then the differences, looked up in a table
+					int mean = (buffer[1] << 8) + (buffer[0] & 0xFF);
+					int step = (buffer[3] << 8) + (buffer[2] & 0xFF);
+					NibbleDecoder.aqdpcm(buffer, 4, 128, step, dif);
+
+					// the first sample continues from the last sample of the previous packet (0 for the first packet),
+					// then the mean is added
+					previous = NibbleDecoder.aqdpcmSamples(dif, numOfSamplesPerPack, mean, previous, packets == 0, packSample);
+
+					for (int i = 0; i < numOfSamplesPerPack; i++) {
+						audioBufferOut[2 * i] = (byte) (packSample[i] & 0xFF);             // LSB
+						audioBufferOut[2 * i + 1] = (byte) ((packSample[i] >> 8) & 0xFF); // MSB
+					}
+					jitter.put(seq, audioBufferOut, 0);  // play the packet
+					for (long n = seq - before - 1; n > 0; n--) {  // and save it after the ones lost before it
+						wav.write(silence, 0, silence.length);
+					}
+					wav.write(audioBufferOut, 0, audioBufferOut.length);
+
+					for (int i = 0; i < numOfSamplesPerPack && packets * numOfSamplesPerPack + i < 2000; i++) {
+						Sample.write(packSample[i]);
+						Dif.write(dif[i]);
+					}
+					if (packets < 300) {
+						Mean.write(mean);
+						Step.write(step);
+					}
+					packets++;
+				}
+
+				for (long n = packets == 0 ? 0 : xxx - 1 - seq; n > 0; n--) {  // the packets lost at the end
+					wav.write(silence, 0, silence.length);
+				}
+			} finally {
+				try {
+					jitter.close();  // let the jitter buffer and the line play what they still hold
+					if (lineOut != null) {
+						lineOut.drain();
+						lineOut.close();
+					}
+				} finally {
+					wav.close();
+				}
+			}
+			System.out.println("Lost packets: " + (xxx - packets) + " " + jitter.summary());
+			Playout.write("lost=" + (xxx - packets) + " " + jitter.summary());
+		} finally {
+			results.close();  // close files
+		}
+
+		System.out.print("End");
+		return;
+	}
+
+	/**
+	 * Receive values from copter while the copter app is open and save values to files. The run ends after 120
+	 * messages or 2 minutes, whichever comes first; a receive waits at most 3 seconds, and the receives that time
+	 * out are counted.
+	 *
+	 * @param echocode the echocode of the copter
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void copterTelemetryUDP(String echocode) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			copterTelemetryUDP(session, echocode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as copterTelemetryUDP(String), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param echocode the echocode of the copter
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void copterTelemetryUDP(IthakiSession session, String echocode) throws IOException {
+		// initialize communication with the copter using the given echocode
+		initiate(session, echocode);
+
+		// create output files for telemetry values, written by a background thread
+		ResultSink results = new ResultSink();
+		try {
+			ResultSink.Output Tel = results.open("telemetry.txt");
+			ResultSink.Output LLL = results.open("LLL.txt");
+			ResultSink.Output RRR = results.open("RRR.txt");
+			ResultSink.Output Alt = results.open("Altitude.txt");
+			ResultSink.Output Temp = results.open("Temperature.txt");
+			ResultSink.Output Press = results.open("Pressure.txt");
+
+			// receive datagrams from the copter on the telemetry port of the session
+			DatagramReceiver copter = session.telemetry(48078);
+			byte[] buffer = new byte[256];
+			ByteBuffer q = ByteBuffer.wrap(buffer);
+
+			// receive telemetry values from the copter for 2 minutes (1 packet per second estimate). Every receive
+			// waits at most 3 intervals of the copter, and the whole run ends 2 minutes after the start even if
+			// packets are missing
+			long end = System.nanoTime() + 120000000000L;
+			long timeouts = copter.timeouts();
+			for (int i = 0; i < 120 && System.nanoTime() < end; i++) {
+				int length = copter.receiveUntil(q, Math.min(end, System.nanoTime() + 3000000000L)); // receive datagram packet from the copter
+				if (length < 0) {
+					continue;
+				}
+				// write the received message to the telemetry file
+				Tel.write(buffer, 0, length, "\r\n");
+
+				String line = new String(buffer, 0, length);
+				System.out.println(line);
+
+				try {
+					// split the message so each value can be written to its own file
+					String[] values = telemetryValues(line);
+					LLL.write(values[0]);    // LLL motor value
+					RRR.write(values[1]);    // RRR motor value
+					Alt.write(values[2]);    // altitude
+					Temp.write(values[3]);   // temperature
+					Press.write(values[4]);  // pressure
+				} catch (RuntimeException e) {
+					// a message without all the values is only saved to the telemetry file
+				}
+			}
+			System.out.println("timeouts=" + (copter.timeouts() - timeouts));
+		} finally {
+			results.close();  // close all the files
+		}
+
+		return;
+	}
+
+	/**
+	 * Takes the values out of a telemetry message of the copter. The message is made of fields separated by spaces,
+	 * and the fields from the fourth to the eighth have the form NAME=value.
+	 *
+	 * @param line the message
+	 * @return the values of the left motor, the right motor, the altitude, the temperature and the pressure
+	 */
+	static String[] telemetryValues(String line) {
+		String[] splitLine = line.split(" ");
+		String[] values = new String[5];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = splitLine[3 + i].split("=")[1];
+		}
+		return values;
+	}
+
+	/**
+	 * Connect to a copter through TCP and send packets to fly the copter with specific engine values.
+	 *
+	 *
+	 * @param wantedlevel  the altitude at which the copter should fly.
+	 *
+	 * @throws IOException
+	 */
+	public static void copterTCPtest(String wantedlevel) throws IOException {
+
+		InetAddress hostAddress = InetAddress.getByName(serverhost); // IP address of the copter.
+		Socket ithaki = new Socket(hostAddress, coptertcpport); // Creates a stream socket and connects it to the specified port number at the specified IP address.
+		InputStream in = ithaki.getInputStream(); // Returns an input stream for this socket.
+		OutputStream out = ithaki.getOutputStream(); // Returns an output stream for this socket.
+
+		String motor = "190"; // Engine values.
+		for (int i = 0; i < 20; i++) { // Send packets to copter.
+			out.write(("AUTO FLIGHTLEVEL=" + wantedlevel + " LMOTOR=" + motor + " RMOTOR=" + motor + " PILOT \r\n").getBytes());
+
+			byte[] b = new byte[113]; // Buffer to store received packets.
+			in.read(b, 0, 113); // Read received packets into the buffer.
+
+			String line = new String(b, 0, b.length); // Convert received packets to string.
+			System.out.println(line); // Print received packets to console.
+		}
+
+		ithaki.close(); // Close the connection to the copter.
+		return;
+	}
+
+
+	/**
+	 * This method receives diagnostics from a vehicle through TCP and saves them to a file. Several requests are
+	 * kept outstanding on the connection (4 by default), so the samples come as fast as the vehicle answers.
+	 *
+	 * @param choice an integer value indicating which value to receive.
+	 * @param echocode a string value of a unique code for the vehicle.
+	 *
+	 * @throws IOException if there is an issue with the file writing or the connection to the server.
+	 */
+	public static void vehicleOBDII(int choice, String echocode) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			vehicleOBDII(session, choice, echocode);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as vehicleOBDII(int, String), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param choice an integer value indicating which value to receive.
+	 * @param echocode a string value of a unique code for the vehicle.
+	 * @throws IOException if there is an issue with the file writing or the connection to the server.
+	 */
+	public static void vehicleOBDII(IthakiSession session, int choice, String echocode) throws IOException {
+		vehicleOBDII(session, choice, echocode, 4);
+	}
+
+	/**
+	 * Same as vehicleOBDII(IthakiSession, int, String), with a given number of requests outstanding.
+	 *
+	 * @param session the session with the server
+	 * @param choice an integer value indicating which value to receive.
+	 * @param echocode a string value of a unique code for the vehicle.
+	 * @param depth the most requests that are outstanding on the connection at the same time
+	 * @throws IOException if there is an issue with the file writing or the connection to the server.
+	 */
+	public static void vehicleOBDII(IthakiSession session, int choice, String echocode, int depth) throws IOException {
+
+    /*
+    The following are the valid choices:
+        1 - Engine run time
+        2 - Intake air temperature
+        3 - Throttle position
+        4 - Engine RPM
+        5 - Vehicle speed
+        6 - Coolant temperature
+    */
+
+		// Initiate the connection with the vehicle.
+		initiate(session, echocode);
+
+		// Determine the pID and filename according to the choice.
+		if (choice < 1 || choice > OBD_PIDS.length) {
+			System.out.println("Invalid input!");
+			return;
+		}
+		ObdPid pID = ObdPid.get(OBD_PIDS[choice - 1]);
+		String filename = OBD_FILES[choice - 1];
+
+		// Create the file and connect to the server through TCP.
+		ResultSink results = new ResultSink();  // the file is written by a background thread
+		ResultSink.Output fop = results.open(filename);
+		ObdClient obd = new ObdClient(serverhost, obdport, depth);
+
+		// Keep up to depth requests outstanding, and save every answer as it arrives. An answer that cannot be
+		// parsed is not counted, and its sample is requested again.
+		ObdParser parser = new ObdParser();
+		int counter = 0;
+		int sent = 0;
+		try {
+			while (counter != 178) {
+				while (sent < 178 && obd.canSend()) {
+					obd.send(pID.code());
+					sent++;
+				}
+				if (obd.receive(parser)) {
+					if (pID.integral()) {
+						fop.write((long) parser.value());
+					} else {
+						fop.write(parser.value());
+					}
+					counter++; // Count num of total data
+				} else {
+					sent--;
+				}
+			}
+		} finally {
+			results.close();
+			obd.close();  // disconnect
+		}
+
+		System.out.println("End vehicle");
+		return;
+	}
+
+	/**
+	 * This method receives all the diagnostics of vehicleOBDII() on one connection at once, each at its own rate,
+	 * and saves every value with the time it arrived, as a line "ms value", to the file of vehicleOBDII() with the
+	 * prefix Sched_, for example Sched_Engine_RPM.txt. The rates are in OBD_RATES.
+	 *
+	 * @param echocode a string value of a unique code for the vehicle.
+	 * @param seconds the duration of the run
+	 * @throws IOException if there is an issue with the file writing or the connection to the server.
+	 */
+	public static void vehicleOBDIIScheduled(String echocode, int seconds) throws IOException {
+		IthakiSession session = new IthakiSession();
+		try {
+			vehicleOBDIIScheduled(session, echocode, seconds);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Same as vehicleOBDIIScheduled(String, int), on a session shared with other methods.
+	 *
+	 * @param session the session with the server
+	 * @param echocode a string value of a unique code for the vehicle.
+	 * @param seconds the duration of the run
+	 * @throws IOException if there is an issue with the file writing or the connection to the server.
+	 */
+	public static void vehicleOBDIIScheduled(IthakiSession session, String echocode, int seconds) throws IOException {
+		initiate(session, echocode);
+
+		ResultSink results = new ResultSink();
+		ObdClient obd = new ObdClient(serverhost, obdport, 4);
+		ObdScheduler scheduler = new ObdScheduler(obd);
+		try {
+			for (int i = 0; i < OBD_PIDS.length; i++) {
+				scheduler.add(ObdPid.get(OBD_PIDS[i]), OBD_RATES[i], results.open("Sched_" + OBD_FILES[i]));
+			}
+			scheduler.run(seconds * 1000L);
+		} finally {
+			results.close();
+			obd.close();
+		}
+
+		System.out.println(scheduler.summary());
+		System.out.println("End vehicle");
+	}
+
+	/**
+	 * Runs the necessary programs with appropriate values to create diagrams, images, audio, and diagnostics.
+	 *
+	 * @param args the command-line arguments
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void main(String[] args) throws IOException{
+		// Set the values for Echo, Image, and Sound
+		String Echo="8070";
+		String Image="5050";
+		String Sound="3736";
+
+		// One session with the server is shared by all the UDP methods, so it is set up only once
+		IthakiSession session = new IthakiSession();
+
+		// Run the echo() function with various parameters
+		echo(session, false, Echo);
+		echo(session, false,"0000");
+
+		// Measure throughput against the number of echo requests in flight
+		echoPipelined(session, false, Echo, new int[] {1, 2, 4, 8, 16, 32}, 30000);
+
+		// Find the best packet size for each camera, then run the image() function with it
+		int[] sizes = {128, 256, 512, 1024};
+		tuneImageSize(session, "FIX", Image, Echo, sizes, 3);
+		tuneImageSize(session, "PTZ", Image, Echo, sizes, 3);
+		image(session, false , bestImageSize("FIX", 256), "FIX", Image, Echo);
+		image(session, false , bestImageSize("PTZ", 256), "PTZ", Image, Echo);
+
+		// Compare stop-and-wait and windowed flow control for several packet sizes
+		flowBenchmark(session, "FIX", Image, Echo, sizes);
+
+		// Run the echo() function again, but with different parameters
+		echo(session, true, Echo);
+
+		// Run the soundDPCM() function with various parameters
+		soundDPCM(session, 999, Sound, "F", Echo);
+		soundDPCM(session, 300, Sound, "T", Echo);
+
+		// Run the soundAQDPCM() function with various parameters
+		soundAQDPCM(session, 999, Sound, Echo);
+
+		// Run the copterTelemetryUDP() function with the Echo value
+		copterTelemetryUDP(session, Echo);
+
+		// Poll all the diagnostics of vehicleOBDII() at once on one connection, each at its own rate
+		vehicleOBDIIScheduled(session, Echo, 90);
+
+		//creating a video
+		 video(session, false, bestImageSize("FIX", 1024), "FIX", "6431");
+		 session.close();
+		 copterTCPtest("250");
+
+		// create a video using the images created earlier
+		// ffmpeg -start_number 1 -framerate 0.6 -i image%d.jpg -vcodec mpeg4 video.mp4
+	}
+
+
+
+}
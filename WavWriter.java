@@ -0,0 +1,125 @@
+package ithaki;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Writes PCM samples to a WAV file as they are produced. The header is written first with empty sizes, the
+ * samples are appended through the file channel, and the sizes are filled in when the writer is closed, so the
+ * samples are never all held in memory. The sizes are also filled in after every second of audio, so if the run
+ * is interrupted the file still plays up to the last second written.
+ * 8 bit WAV files are unsigned, so 8 bit signed samples are converted while they are written, as
+ * AudioSystem.write() does; 16 bit samples must be signed little endian.
+ */
+public class WavWriter implements Closeable {
+
+	private static final int HEADER = 44;
+
+	private final FileChannel channel;
+	private final ByteBuffer staging = ByteBuffer.allocateDirect(4096);
+	private final boolean toUnsigned;
+	private final ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+	private final long patchInterval;
+	private long dataBytes;
+	private long patched;
+
+	/**
+	 * Creates the file and writes the header.
+	 *
+	 * @param file   the file to write
+	 * @param format the format of the samples, 8 or 16 bit PCM
+	 * @throws IOException if the file cannot be written
+	 */
+	public WavWriter(File file, AudioFormat format) throws IOException {
+		int bits = format.getSampleSizeInBits();
+		toUnsigned = bits == 8 && format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED;
+		channel = new FileOutputStream(file).getChannel();
+		patchInterval = (long) format.getSampleRate() * format.getChannels() * bits / 8;
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		int channels = format.getChannels();
+		int rate = (int) format.getSampleRate();
+		header.put("RIFF".getBytes()).putInt(0).put("WAVE".getBytes());
+		header.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels).putInt(rate);
+		header.putInt(rate * channels * bits / 8).putShort((short) (channels * bits / 8)).putShort((short) bits);
+		header.put("data".getBytes()).putInt(0);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+	}
+
+	/**
+	 * Appends samples to the file.
+	 *
+	 * @param samples the bytes of the samples, in the format given to the constructor
+	 * @param offset  the first byte to write
+	 * @param length  the number of bytes to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(byte[] samples, int offset, int length) throws IOException {
+		while (length > 0) {
+			int n = Math.min(length, staging.capacity());
+			staging.clear();
+			for (int i = 0; i < n; i++) {
+				staging.put(toUnsigned ? (byte) (samples[offset + i] ^ 0x80) : samples[offset + i]);
+			}
+			staging.flip();
+			while (staging.hasRemaining()) {
+				channel.write(staging);
+			}
+			offset += n;
+			length -= n;
+			dataBytes += n;
+		}
+		if (dataBytes - patched >= patchInterval) {
+			patchSizes(0);
+		}
+	}
+
+	/**
+	 * @return the bytes of samples written so far
+	 */
+	public long dataBytes() {
+		return dataBytes;
+	}
+
+	/**
+	 * Fills in the sizes in the header and closes the file. An odd number of data bytes is padded with a zero
+	 * byte, as the RIFF format requires.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			int pad = (int) (dataBytes & 1);
+			if (pad != 0) {
+				channel.write(ByteBuffer.allocate(1));
+			}
+			patchSizes(pad);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the sizes of the samples written so far into the header, without moving the write position.
+	 *
+	 * @param pad the pad byte after the data, counted in the RIFF size
+	 */
+	private void patchSizes(int pad) throws IOException {
+		long riff = HEADER - 8 + dataBytes + pad;
+		size.putInt(0, (int) Math.min(riff, 0xFFFFFFFFL));
+		size.clear();
+		channel.write(size, 4);
+		size.putInt(0, (int) Math.min(dataBytes, 0xFFFFFFFFL));
+		size.clear();
+		channel.write(size, 40);
+		patched = dataBytes;
+	}
+}
@@ -0,0 +1,62 @@
+package ithaki;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes one DPCM and one AQDPCM packet per operation, as the sound methods do for every packet they receive.
+ * The packets are random bytes; the AQDPCM packet has a small step and a mean around 0, as a real track.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+
+	private final byte[] dpcmPacket = new byte[128];
+	private final byte[] aqdpcmPacket = new byte[132];
+	private final int[] dif = new int[256];
+	private final byte[] samples = new byte[256];
+	private final int[] aqSamples = new int[256];
+	private final DpcmDecoder decoder = new DpcmDecoder();
+	private int previous;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		random.nextBytes(dpcmPacket);
+		random.nextBytes(aqdpcmPacket);
+		aqdpcmPacket[0] = 12;  // mean
+		aqdpcmPacket[1] = 0;
+		aqdpcmPacket[2] = 90;  // step
+		aqdpcmPacket[3] = 0;
+	}
+
+	@Benchmark
+	public byte[] dpcmPacket() {
+		decoder.differences(dpcmPacket, 0, dif);
+		decoder.reconstruct(dif, samples);
+		return samples;
+	}
+
+	@Benchmark
+	public int aqdpcmPacket() {
+		int mean = (aqdpcmPacket[1] << 8) + (aqdpcmPacket[0] & 0xFF);
+		int step = (aqdpcmPacket[3] << 8) + (aqdpcmPacket[2] & 0xFF);
+		NibbleDecoder.aqdpcm(aqdpcmPacket, 4, 128, step, dif);
+		previous = NibbleDecoder.aqdpcmSamples(dif, 256, mean, previous, false, aqSamples);
+		return previous;
+	}
+}
@@ -0,0 +1,63 @@
+package ithaki;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Feeds rtt samples to an estimator and reads its srtt, rttvar and rto, as the loop of echo() does for every
+ * reply. One operation is one sample. The samples are around 30 ms with a spike now and then.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstimatorBenchmark {
+
+	private static final int SAMPLES = 1024;
+
+	@Param({"jacobson", "rfc6298", "eifel"})
+	public String estimator;
+
+	private final double[] rtt = new double[SAMPLES];
+	private RttEstimator rto;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		for (int i = 0; i < SAMPLES; i++) {
+			rtt[i] = 30 + random.nextGaussian() * 4 + (i % 100 == 0 ? 200 : 0);
+		}
+		if ("jacobson".equals(estimator)) {
+			rto = new RttEstimator.Jacobson(0.9, 0.75, 4);
+		} else if ("rfc6298".equals(estimator)) {
+			rto = new RttEstimator.Rfc6298();
+		} else {
+			rto = new RttEstimator.Eifel();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public double sample() {
+		double sum = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			rto.sample(rtt[i]);
+			sum += rto.getSrtt() + rto.getRttvar() + rto.getRto();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,103 @@
+package ithaki;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes a whole capture per operation with ParallelDecoder, serially and on pools of several threads, to show
+ * how the parallel prefix sum scales. The serial benchmarks do not depend on the number of threads and run once.
+ * The capture is random; the AQDPCM one has small steps and a mean around 0, as a real track, with a loud stretch
+ * now and then so the clamp fires.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelDecoderBenchmark {
+
+	/**
+	 * The packets of the capture, shared by all the benchmarks.
+	 */
+	@State(Scope.Benchmark)
+	public static class Capture {
+
+		@Param({"20000"})
+		public int packets;
+
+		byte[] dpcm;
+		byte[] aqdpcm;
+
+		@Setup
+		public void setup() {
+			Random random = new Random(1);
+			dpcm = new byte[packets * ParallelDecoder.DPCM_PACKET];
+			random.nextBytes(dpcm);
+			aqdpcm = new byte[packets * ParallelDecoder.AQDPCM_PACKET];
+			random.nextBytes(aqdpcm);
+			for (int k = 0; k < packets; k++) {
+				int base = k * ParallelDecoder.AQDPCM_PACKET;
+				int step = k % 50 < 3 ? 4000 : 1 + random.nextInt(200);
+				aqdpcm[base] = (byte) random.nextInt(64);
+				aqdpcm[base + 1] = 0;
+				aqdpcm[base + 2] = (byte) step;
+				aqdpcm[base + 3] = (byte) (step >> 8);
+			}
+		}
+	}
+
+	/**
+	 * The pool the parallel benchmarks decode on.
+	 */
+	@State(Scope.Benchmark)
+	public static class Pool {
+
+		@Param({"1", "2", "4", "8"})
+		public int threads;
+
+		ForkJoinPool pool;
+
+		@Setup
+		public void setup() {
+			pool = new ForkJoinPool(threads);
+		}
+
+		@TearDown
+		public void tearDown() {
+			pool.shutdown();
+		}
+	}
+
+	@Benchmark
+	public byte[] dpcmSerial(Capture capture) {
+		return ParallelDecoder.dpcmSerial(capture.dpcm, capture.packets);
+	}
+
+	@Benchmark
+	public int[] aqdpcmSerial(Capture capture) {
+		return ParallelDecoder.aqdpcmSerial(capture.aqdpcm, capture.packets);
+	}
+
+	@Benchmark
+	public byte[] dpcmParallel(Capture capture, Pool pool) {
+		return ParallelDecoder.dpcm(capture.dpcm, capture.packets, pool.pool);
+	}
+
+	@Benchmark
+	public int[] aqdpcmParallel(Capture capture, Pool pool) {
+		return ParallelDecoder.aqdpcm(capture.aqdpcm, capture.packets, pool.pool);
+	}
+}
@@ -0,0 +1,62 @@
+package ithaki;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses one copter telemetry message and one OBD-II response per operation, as copterTelemetryUDP() and
+ * vehicleOBDII() do for every message. The payloads have the layout of the messages of the lab server. The OBD-II
+ * answer is parsed from its bytes with ObdParser, which allocates nothing; run with -prof gc to check. Only the
+ * OBD-II benchmark is run for every PID, the telemetry message does not depend on it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	private static final String TELEMETRY = "ITHAKICOPTER IP=155.207.18.208 TIME=2023-01-12T18:27:45.361 LMOTOR=190 "
+			+ "RMOTOR=190 ALTITUDE=212 TEMPERATURE=+22.17 PRESSURE=1012.46";
+
+	/**
+	 * An OBD-II response for one PID and the parser reused for it.
+	 */
+	@State(Scope.Thread)
+	public static class Obd {
+
+		@Param({"1F", "0F", "11", "0C", "0D", "05", "04", "10"})
+		public String pid;
+
+		byte[] response;
+		final ObdParser parser = new ObdParser();
+
+		@Setup
+		public void setup() {
+			response = ("41 " + pid + " 1A" + (ObdPid.get(pid).bytes() == 2 ? " 2B" : "")).getBytes();
+		}
+	}
+
+	@Benchmark
+	public String[] telemetry() {
+		return UserProgram.telemetryValues(TELEMETRY);
+	}
+
+	@Benchmark
+	public double obd(Obd state) {
+		if (!state.parser.parse(state.response, 0, state.response.length)) {
+			throw new IllegalStateException("cannot parse " + state.pid);
+		}
+		return state.parser.value();
+	}
+}
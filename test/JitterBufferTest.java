@@ -0,0 +1,77 @@
+package ithaki;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.IOException;
+import javax.sound.sampled.AudioFormat;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Numbers synthetic arrival traces with JitterBuffer.sequence(): frames of 256 samples at 8 kHz, sent 32 ms apart.
+ */
+public class JitterBufferTest {
+
+	private static final long FRAME = 32000000L;
+	private static final long START = 1000000000L;
+
+	private final JitterBuffer buffer = new JitterBuffer(new AudioFormat(8000, 8, 1, true, false), 256, 64, null);
+
+	@After
+	public void tearDown() throws IOException {
+		buffer.close();
+	}
+
+	/**
+	 * Numbers the arrivals of the frames that were not lost, each delayed by the given milliseconds.
+	 */
+	private long[] number(int frames, int[] lost, long[] delays) {
+		long[] numbers = new long[frames - lost.length];
+		for (int n = 0, k = 0, l = 0; n < frames; n++) {
+			if (l < lost.length && lost[l] == n) {
+				l++;
+				continue;
+			}
+			numbers[k++] = buffer.sequence(START + n * FRAME + delays[n] * 1000000);
+		}
+		return numbers;
+	}
+
+	private static long[] range(long from, long to) {
+		long[] numbers = new long[(int) (to - from)];
+		for (int i = 0; i < numbers.length; i++) {
+			numbers[i] = from + i;
+		}
+		return numbers;
+	}
+
+	@Test
+	public void delaySpikeKeepsNumbers() {
+		long[] delays = new long[20];
+		for (int n = 5; n <= 9; n++) {  // held back until about 130 ms after frame 5 was due, then a burst
+			delays[n] = 130 - (n - 5) * 32 + (n - 5);
+		}
+		assertArrayEquals(range(0, 20), number(20, new int[0], delays));
+	}
+
+	@Test
+	public void lossLeavesGap() {
+		long[] delays = new long[20];
+		for (int n = 0; n < delays.length; n++) {
+			delays[n] = (n * 7919) % 11;  // up to 10 ms
+		}
+		long[] numbers = number(20, new int[] {5, 6, 7, 8}, delays);
+		// the frame after the gap only looks late; the next one on pace shows the loss
+		long[] expected = {0, 1, 2, 3, 4, 5, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19};
+		assertArrayEquals(expected, numbers);
+	}
+
+	@Test
+	public void jitterKeepsNumbers() {
+		long[] delays = new long[40];
+		for (int n = 0; n < delays.length; n++) {
+			delays[n] = (n * 7919) % 25;  // up to 24 ms
+		}
+		assertArrayEquals(range(0, 40), number(40, new int[0], delays));
+	}
+}
@@ -0,0 +1,94 @@
+package ithaki;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Decodes random packets with the tables of NibbleDecoder and with the per-byte arithmetic the sound methods used
+ * before, and checks that the differences and the samples are bit-identical.
+ */
+public class NibbleDecoderTest {
+
+	private static final int PACKETS = 100000;
+
+	@Test
+	public void dpcmMatchesArithmetic() {
+		Random random = new Random(1);
+		byte[] packet = new byte[128];
+		int[] dif = new int[256];
+		int[] expectedDif = new int[256];
+		byte[] samples = new byte[256];
+		byte[] expectedSamples = new byte[256];
+		byte last = 0;
+
+		for (int k = 0; k < PACKETS; k++) {
+			random.nextBytes(packet);
+			boolean first = k == 0;
+
+			// as soundDPCM() decoded it
+			for (int n = 0, d = 0; n < 128; n++) {
+				int a = packet[n];
+				expectedDif[d++] = (15 & a) - 8;
+				expectedDif[d++] = ((240 & a) >> 4) - 8;
+			}
+			expectedSamples[0] = first ? 0 : (byte) (expectedDif[0] + last);
+			for (int p = 1; p < 256; p++) {
+				expectedSamples[p] = (byte) (expectedDif[p] + expectedSamples[p - 1]);
+			}
+
+			NibbleDecoder.dpcm(packet, 0, 128, dif);
+			NibbleDecoder.dpcmSamples(dif, 256, last, first, samples);
+			assertArrayEquals("differences of packet " + k, expectedDif, dif);
+			assertArrayEquals("samples of packet " + k, expectedSamples, samples);
+			last = expectedSamples[255];
+		}
+	}
+
+	@Test
+	public void aqdpcmMatchesArithmetic() {
+		Random random = new Random(1);
+		byte[] packet = new byte[132];
+		int[] dif = new int[256];
+		int[] expectedDif = new int[256];
+		int[] samples = new int[256];
+		int[] expectedSamples = new int[256];
+		int last = 0;
+
+		for (int k = 0; k < PACKETS; k++) {
+			random.nextBytes(packet);
+			if (k % 7 == 0) {  // large steps, so the clamp fires
+				packet[3] = (byte) random.nextInt(128);
+			}
+			boolean first = k == 0;
+
+			// as soundAQDPCM() decoded it
+			int mean = (packet[1] << 8) + (packet[0] & 0xFF);
+			int step = (packet[3] << 8) + (packet[2] & 0xFF);
+			for (int i = 4, j = 0; i < 132; i++) {
+				expectedDif[j++] = ((packet[i] >> 4 & 0x0F) - 8) * step;
+				expectedDif[j++] = ((packet[i] & 0x0F) - 8) * step;
+			}
+			int sum = 0;
+			for (int i = 0; i < 256; i++) {
+				sum = i == 0 ? (first ? 0 : expectedDif[0] + last) : expectedDif[i] + sum;
+				if (sum > 32000) {
+					sum = 32000;
+				}
+				if (sum < -32000) {
+					sum = -32000;
+				}
+				expectedSamples[i] = sum + mean;
+			}
+
+			NibbleDecoder.aqdpcm(packet, 4, 128, step, dif);
+			int returned = NibbleDecoder.aqdpcmSamples(dif, 256, mean, last, first, samples);
+			assertArrayEquals("differences of packet " + k, expectedDif, dif);
+			assertArrayEquals("samples of packet " + k, expectedSamples, samples);
+			assertEquals("last sample of packet " + k, expectedSamples[255], returned);
+			last = expectedSamples[255];
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package ithaki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.Test;
+
+/**
+ * Parses answers of the lab server and broken ones, and checks that parsing allocates nothing.
+ */
+public class ObdParserTest {
+
+	private final ObdParser parser = new ObdParser();
+
+	private boolean parse(String answer) {
+		byte[] line = answer.getBytes();
+		return parser.parse(line, 0, line.length);
+	}
+
+	private void assertValue(String answer, double expected) {
+		assertTrue(answer, parse(answer));
+		assertEquals(answer, expected, parser.value(), 0);
+	}
+
+	@Test
+	public void parsesAnswers() {
+		assertValue("41 0C 1A F8", 1726);
+		assertValue("41 1F 01 2C", 300);
+		assertValue("41 05 7B", 83);
+		assertValue("41 11 FF", 100);
+		assertValue("41 06 80", 0);
+		assertValue("41 10 01 F4", 5);
+		assertValue("410D32", 50);  // without spaces, as an ELM327 can send it
+		assertValue("41 0d 32", 50);
+	}
+
+	@Test
+	public void keepsPidAndBytes() {
+		assertTrue(parse("41 0C 1A F8"));
+		assertEquals(0x0C, parser.pid().code());
+		assertEquals(2, parser.dataBytes());
+		assertEquals(0x1A, parser.data(0));
+		assertEquals(0xF8, parser.data(1));
+	}
+
+	@Test
+	public void rejectsBrokenAnswers() {
+		assertFalse(parse("41 0C 1A"));      // a data byte missing
+		assertFalse(parse("41 0C 1A F"));    // half a byte
+		assertFalse(parse("41 0C 1A FG"));
+		assertFalse(parse("41 0 C 1A F8"));  // a byte of one digit
+		assertFalse(parse("41 FE 00"));      // not registered
+		assertFalse(parse("7F 01 12"));
+		assertFalse(parse("?"));
+		assertFalse(parse("NO DATA"));
+		assertFalse(parse(""));
+	}
+
+	@Test
+	public void allocatesNothing() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		assumeTrue("the JVM does not count allocated bytes", threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+		byte[] line = "41 0C 1A F8".getBytes();
+		double sum = 0;
+		for (int i = 0; i < 100000; i++) {  // warm up, so the allocations of the interpreter are out of the way
+			parser.parse(line, 0, line.length);
+			sum += parser.value();
+		}
+		long id = Thread.currentThread().getId();
+		long before = hotspot.getThreadAllocatedBytes(id);
+		for (int i = 0; i < 1000000; i++) {
+			parser.parse(line, 0, line.length);
+			sum += parser.value();
+		}
+		long allocated = hotspot.getThreadAllocatedBytes(id) - before;
+		// one object per answer would be megabytes, a few bytes are the JVM's own
+		assertTrue(allocated + " bytes allocated for 1000000 answers (checksum " + sum + ")", allocated < 1024);
+	}
+}
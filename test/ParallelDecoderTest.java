@@ -0,0 +1,88 @@
+package ithaki;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Decodes random captures in parallel on pools of several sizes and checks that the samples are the same as
+ * decoding the packets one after the other.
+ */
+public class ParallelDecoderTest {
+
+	private static final int PACKETS = 5000;
+	private static final int[] THREADS = {1, 2, 4};
+
+	private static byte[] dpcmCapture;
+	private static byte[] aqCapture;
+	private static ForkJoinPool[] pools;
+
+	@BeforeClass
+	public static void setUp() {
+		Random random = new Random(1);
+		dpcmCapture = new byte[PACKETS * ParallelDecoder.DPCM_PACKET];
+		random.nextBytes(dpcmCapture);
+		aqCapture = aqdpcmCapture(PACKETS, random);
+		pools = new ForkJoinPool[THREADS.length];
+		for (int t = 0; t < THREADS.length; t++) {
+			pools[t] = new ForkJoinPool(THREADS[t]);
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		for (ForkJoinPool pool : pools) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Builds an AQDPCM capture with small steps and a mean around 0, as a real track, and a loud stretch now and
+	 * then so the clamp fires.
+	 */
+	static byte[] aqdpcmCapture(int packets, Random random) {
+		byte[] capture = new byte[packets * ParallelDecoder.AQDPCM_PACKET];
+		random.nextBytes(capture);
+		for (int k = 0; k < packets; k++) {
+			int base = k * ParallelDecoder.AQDPCM_PACKET;
+			int step = k % 50 < 3 ? 4000 : 1 + random.nextInt(200);
+			capture[base] = (byte) random.nextInt(64);
+			capture[base + 1] = 0;
+			capture[base + 2] = (byte) step;
+			capture[base + 3] = (byte) (step >> 8);
+		}
+		return capture;
+	}
+
+	@Test
+	public void dpcmMatchesSerial() {
+		byte[] expected = ParallelDecoder.dpcmSerial(dpcmCapture, PACKETS);
+		for (int t = 0; t < THREADS.length; t++) {
+			assertArrayEquals(THREADS[t] + " threads", expected, ParallelDecoder.dpcm(dpcmCapture, PACKETS, pools[t]));
+		}
+	}
+
+	@Test
+	public void aqdpcmMatchesSerial() {
+		int[] expected = ParallelDecoder.aqdpcmSerial(aqCapture, PACKETS);
+		for (int t = 0; t < THREADS.length; t++) {
+			assertArrayEquals(THREADS[t] + " threads", expected, ParallelDecoder.aqdpcm(aqCapture, PACKETS, pools[t]));
+		}
+	}
+
+	@Test
+	public void shortCapturesMatchSerial() {
+		Random random = new Random(2);
+		for (int packets = 1; packets <= 3; packets++) {  // below the split threshold, and the first packet alone
+			byte[] dpcm = new byte[packets * ParallelDecoder.DPCM_PACKET];
+			random.nextBytes(dpcm);
+			byte[] aq = aqdpcmCapture(packets, random);
+			assertArrayEquals(ParallelDecoder.dpcmSerial(dpcm, packets), ParallelDecoder.dpcm(dpcm, packets, pools[1]));
+			assertArrayEquals(ParallelDecoder.aqdpcmSerial(aq, packets), ParallelDecoder.aqdpcm(aq, packets, pools[1]));
+		}
+	}
+}